@@ -1,11 +1,14 @@
 package org.templateproject.security;
 
 import org.templateproject.security.digest.DigestAlgorithm;
-import org.templateproject.security.digest.Digester;
+import org.templateproject.security.digest.DigesterPool;
+import org.templateproject.security.exception.CryptoException;
 
 import java.io.File;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
 
 
 /**
@@ -25,7 +28,7 @@ public class DigestUtils {
      * @return MD5摘要
      */
     public static byte[] md5(byte[] data) {
-        return new Digester(DigestAlgorithm.MD5).digest(data);
+        return DigesterPool.get(DigestAlgorithm.MD5).digest(data);
     }
 
     /**
@@ -36,7 +39,7 @@ public class DigestUtils {
      * @return MD5摘要
      */
     public static byte[] md5(String data, String charset) {
-        return new Digester(DigestAlgorithm.MD5).digest(data, charset);
+        return DigesterPool.get(DigestAlgorithm.MD5).digest(data, charset);
     }
 
     /**
@@ -56,7 +59,7 @@ public class DigestUtils {
      * @return MD5摘要
      */
     public static byte[] md5(InputStream data) {
-        return new Digester(DigestAlgorithm.MD5).digest(data);
+        return DigesterPool.get(DigestAlgorithm.MD5).digest(data);
     }
 
     /**
@@ -66,7 +69,7 @@ public class DigestUtils {
      * @return MD5摘要
      */
     public static byte[] md5(File file) {
-        return new Digester(DigestAlgorithm.MD5).digest(file);
+        return DigesterPool.get(DigestAlgorithm.MD5).digest(file);
     }
 
     /**
@@ -76,7 +79,7 @@ public class DigestUtils {
      * @return MD5摘要的16进制表示
      */
     public static String md5Hex(byte[] data) {
-        return new Digester(DigestAlgorithm.MD5).digestHex(data);
+        return DigesterPool.get(DigestAlgorithm.MD5).digestHex(data);
     }
 
     /**
@@ -87,7 +90,7 @@ public class DigestUtils {
      * @return MD5摘要的16进制表示
      */
     public static String md5Hex(String data, String charset) {
-        return new Digester(DigestAlgorithm.MD5).digestHex(data, charset);
+        return DigesterPool.get(DigestAlgorithm.MD5).digestHex(data, charset);
     }
 
     /**
@@ -107,7 +110,7 @@ public class DigestUtils {
      * @return MD5摘要的16进制表示
      */
     public static String md5Hex(InputStream data) {
-        return new Digester(DigestAlgorithm.MD5).digestHex(data);
+        return DigesterPool.get(DigestAlgorithm.MD5).digestHex(data);
     }
 
     /**
@@ -117,7 +120,7 @@ public class DigestUtils {
      * @return MD5摘要的16进制表示
      */
     public static String md5Hex(File file) {
-        return new Digester(DigestAlgorithm.MD5).digestHex(file);
+        return DigesterPool.get(DigestAlgorithm.MD5).digestHex(file);
     }
 
     // ------------------------------------------------------------------------------------------- SHA-1
@@ -129,7 +132,7 @@ public class DigestUtils {
      * @return SHA-1摘要
      */
     public static byte[] sha1(byte[] data) {
-        return new Digester(DigestAlgorithm.SHA1).digest(data);
+        return DigesterPool.get(DigestAlgorithm.SHA1).digest(data);
     }
 
     /**
@@ -140,7 +143,7 @@ public class DigestUtils {
      * @return SHA-1摘要
      */
     public static byte[] sha1(String data, String charset) {
-        return new Digester(DigestAlgorithm.SHA1).digest(data, charset);
+        return DigesterPool.get(DigestAlgorithm.SHA1).digest(data, charset);
     }
 
     /**
@@ -160,7 +163,7 @@ public class DigestUtils {
      * @return SHA-1摘要
      */
     public static byte[] sha1(InputStream data) {
-        return new Digester(DigestAlgorithm.SHA1).digest(data);
+        return DigesterPool.get(DigestAlgorithm.SHA1).digest(data);
     }
 
     /**
@@ -170,7 +173,7 @@ public class DigestUtils {
      * @return SHA-1摘要
      */
     public static byte[] sha1(File file) {
-        return new Digester(DigestAlgorithm.SHA1).digest(file);
+        return DigesterPool.get(DigestAlgorithm.SHA1).digest(file);
     }
 
     /**
@@ -180,7 +183,7 @@ public class DigestUtils {
      * @return SHA-1摘要的16进制表示
      */
     public static String sha1Hex(byte[] data) {
-        return new Digester(DigestAlgorithm.SHA1).digestHex(data);
+        return DigesterPool.get(DigestAlgorithm.SHA1).digestHex(data);
     }
 
     /**
@@ -191,7 +194,7 @@ public class DigestUtils {
      * @return SHA-1摘要的16进制表示
      */
     public static String sha1Hex(String data, String charset) {
-        return new Digester(DigestAlgorithm.SHA1).digestHex(data, charset);
+        return DigesterPool.get(DigestAlgorithm.SHA1).digestHex(data, charset);
     }
 
     /**
@@ -211,7 +214,7 @@ public class DigestUtils {
      * @return SHA-1摘要的16进制表示
      */
     public static String sha1Hex(InputStream data) {
-        return new Digester(DigestAlgorithm.SHA1).digestHex(data);
+        return DigesterPool.get(DigestAlgorithm.SHA1).digestHex(data);
     }
 
     /**
@@ -221,6 +224,318 @@ public class DigestUtils {
      * @return SHA-1摘要的16进制表示
      */
     public static String sha1Hex(File file) {
-        return new Digester(DigestAlgorithm.SHA1).digestHex(file);
+        return DigesterPool.get(DigestAlgorithm.SHA1).digestHex(file);
+    }
+
+    // ------------------------------------------------------------------------------------------- SHA-256
+
+    /**
+     * 计算SHA-256摘要值
+     *
+     * @param data 被摘要数据
+     * @return SHA-256摘要
+     */
+    public static byte[] sha256(byte[] data) {
+        return digest(DigestAlgorithm.SHA256, data);
+    }
+
+    /**
+     * 计算SHA-256摘要值，使用UTF-8编码
+     *
+     * @param data 被摘要数据
+     * @return SHA-256摘要
+     */
+    public static byte[] sha256(String data) {
+        return digest(DigestAlgorithm.SHA256, data);
+    }
+
+    /**
+     * 计算SHA-256摘要值
+     *
+     * @param file 被摘要文件
+     * @return SHA-256摘要
+     */
+    public static byte[] sha256(File file) {
+        return digest(DigestAlgorithm.SHA256, file);
+    }
+
+    /**
+     * 计算SHA-256摘要值，并转为16进制字符串
+     *
+     * @param data 被摘要数据
+     * @return SHA-256摘要的16进制表示
+     */
+    public static String sha256Hex(byte[] data) {
+        return digestHex(DigestAlgorithm.SHA256, data);
+    }
+
+    /**
+     * 计算SHA-256摘要值，并转为16进制字符串，使用UTF-8编码
+     *
+     * @param data 被摘要数据
+     * @return SHA-256摘要的16进制表示
+     */
+    public static String sha256Hex(String data) {
+        return digestHex(DigestAlgorithm.SHA256, data);
+    }
+
+    /**
+     * 计算SHA-256摘要值，并转为16进制字符串
+     *
+     * @param file 被摘要文件
+     * @return SHA-256摘要的16进制表示
+     */
+    public static String sha256Hex(File file) {
+        return digestHex(DigestAlgorithm.SHA256, file);
+    }
+
+    // ------------------------------------------------------------------------------------------- Generic
+
+    /**
+     * 计算指定算法的摘要值
+     *
+     * @param algorithm 算法
+     * @param data      被摘要数据
+     * @return 摘要
+     */
+    public static byte[] digest(DigestAlgorithm algorithm, byte[] data) {
+        return DigesterPool.get(algorithm).digest(data);
+    }
+
+    /**
+     * 计算指定算法的摘要值，使用UTF-8编码
+     *
+     * @param algorithm 算法
+     * @param data      被摘要数据
+     * @return 摘要
+     */
+    public static byte[] digest(DigestAlgorithm algorithm, String data) {
+        return DigesterPool.get(algorithm).digest(data, StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * 计算指定算法的摘要值
+     *
+     * @param algorithm 算法
+     * @param data      被摘要数据
+     * @return 摘要
+     */
+    public static byte[] digest(DigestAlgorithm algorithm, InputStream data) {
+        return DigesterPool.get(algorithm).digest(data);
+    }
+
+    /**
+     * 计算指定算法的摘要值
+     *
+     * @param algorithm 算法
+     * @param file      被摘要文件
+     * @return 摘要
+     */
+    public static byte[] digest(DigestAlgorithm algorithm, File file) {
+        return DigesterPool.get(algorithm).digest(file);
+    }
+
+    /**
+     * 计算指定算法的摘要值，并转为16进制字符串
+     *
+     * @param algorithm 算法
+     * @param data      被摘要数据
+     * @return 摘要的16进制表示
+     */
+    public static String digestHex(DigestAlgorithm algorithm, byte[] data) {
+        return DigesterPool.get(algorithm).digestHex(data);
+    }
+
+    /**
+     * 计算指定算法的摘要值，并转为16进制字符串，使用UTF-8编码
+     *
+     * @param algorithm 算法
+     * @param data      被摘要数据
+     * @return 摘要的16进制表示
+     */
+    public static String digestHex(DigestAlgorithm algorithm, String data) {
+        return DigesterPool.get(algorithm).digestHex(data, StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * 计算指定算法的摘要值，并转为16进制字符串
+     *
+     * @param algorithm 算法
+     * @param data      被摘要数据
+     * @return 摘要的16进制表示
+     */
+    public static String digestHex(DigestAlgorithm algorithm, InputStream data) {
+        return DigesterPool.get(algorithm).digestHex(data);
+    }
+
+    /**
+     * 计算指定算法的摘要值，并转为16进制字符串
+     *
+     * @param algorithm 算法
+     * @param file      被摘要文件
+     * @return 摘要的16进制表示
+     */
+    public static String digestHex(DigestAlgorithm algorithm, File file) {
+        return DigesterPool.get(algorithm).digestHex(file);
+    }
+
+    // ------------------------------------------------------------------------------------------- Batch
+
+    /**
+     * 批量计算MD5摘要值，并转为16进制字符串，使用UTF-8编码
+     *
+     * @param data 被摘要数据
+     * @return MD5摘要的16进制表示，与data一一对应
+     */
+    public static String[] md5Hex(String[] data) {
+        return digestHex(DigestAlgorithm.MD5, data);
+    }
+
+    /**
+     * 批量计算SHA-1摘要值，并转为16进制字符串，使用UTF-8编码
+     *
+     * @param data 被摘要数据
+     * @return SHA-1摘要的16进制表示，与data一一对应
+     */
+    public static String[] sha1Hex(String[] data) {
+        return digestHex(DigestAlgorithm.SHA1, data);
+    }
+
+    /**
+     * 批量计算摘要值，所有数据复用同一个摘要对象
+     *
+     * @param algorithm 算法
+     * @param data      被摘要数据，元素为<code>null</code>时对应结果也为<code>null</code>
+     * @return 摘要，与data一一对应
+     */
+    public static byte[][] digest(DigestAlgorithm algorithm, byte[][] data) {
+        MessageDigest digest = DigesterPool.get(algorithm).getDigest();
+        byte[][] result = new byte[data.length][];
+        try {
+            for (int i = 0; i < data.length; i++) {
+                result[i] = null == data[i] ? null : digest.digest(data[i]);
+            }
+        } finally {
+            digest.reset();
+        }
+        return result;
+    }
+
+    /**
+     * 批量计算摘要值，并转为16进制字符串，使用UTF-8编码<br>
+     * 所有数据复用同一个摘要对象、编码缓冲和16进制缓冲，每个数据只产生结果字符串本身
+     *
+     * @param algorithm 算法
+     * @param data      被摘要数据，元素为<code>null</code>时对应结果也为<code>null</code>
+     * @return 摘要的16进制表示，与data一一对应
+     */
+    public static String[] digestHex(DigestAlgorithm algorithm, String[] data) {
+        MessageDigest digest = DigesterPool.get(algorithm).getDigest();
+        int length = digest.getDigestLength();
+        byte[] hash = new byte[length];
+        char[] hex = new char[length << 1];
+        Utf8Buffer buffer = new Utf8Buffer();
+        String[] result = new String[data.length];
+        try {
+            for (int i = 0; i < data.length; i++) {
+                if (null != data[i]) {
+                    digestUtf8(digest, data[i], buffer, hash);
+                    HexUtils.encodeHex(hash, 0, length, hex, 0, true);
+                    result[i] = new String(hex);
+                }
+            }
+        } finally {
+            digest.reset();
+        }
+        return result;
+    }
+
+    /**
+     * 批量计算摘要值，并将16进制字符依次写入给定的字符数组，使用UTF-8编码<br>
+     * 每个摘要占用 摘要长度 * 2 个字符，整个过程除首次使用的编码缓冲外不产生新的对象
+     *
+     * @param algorithm 算法
+     * @param data      被摘要数据，元素不可为<code>null</code>
+     * @param out       输出的字符数组，剩余空间不少于 data.length * 摘要长度 * 2
+     * @param offset    输出起始位置
+     * @return 写入的字符数
+     */
+    public static int digestHex(DigestAlgorithm algorithm, String[] data, char[] out, int offset) {
+        MessageDigest digest = DigesterPool.get(algorithm).getDigest();
+        int length = digest.getDigestLength();
+        byte[] hash = new byte[length];
+        Utf8Buffer buffer = new Utf8Buffer();
+        int position = offset;
+        try {
+            for (String item : data) {
+                digestUtf8(digest, item, buffer, hash);
+                position += HexUtils.encodeHex(hash, 0, length, out, position, true);
+            }
+        } finally {
+            digest.reset();
+        }
+        return position - offset;
+    }
+
+    /**
+     * 将字符串按UTF-8编码写入缓冲并计算摘要，结果写入hash
+     */
+    private static void digestUtf8(MessageDigest digest, String data, Utf8Buffer buffer, byte[] hash) {
+        int size = buffer.encode(data);
+        digest.update(buffer.bytes, 0, size);
+        try {
+            digest.digest(hash, 0, hash.length);
+        } catch (DigestException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 可复用的UTF-8编码缓冲，编码结果与 {@link String#getBytes(java.nio.charset.Charset)} 一致（孤立的代理字符编码为'?'）
+     */
+    private static final class Utf8Buffer {
+
+        private byte[] bytes = new byte[64];
+
+        /**
+         * 编码字符串，结果存放在 bytes 中
+         *
+         * @param str 字符串
+         * @return 编码后的字节数
+         */
+        int encode(String str) {
+            int length = str.length();
+            if (bytes.length < length * 3) {
+                bytes = new byte[length * 3];
+            }
+            byte[] out = bytes;
+            int j = 0;
+            for (int i = 0; i < length; i++) {
+                char c = str.charAt(i);
+                if (c < 0x80) {
+                    out[j++] = (byte) c;
+                } else if (c < 0x800) {
+                    out[j++] = (byte) (0xC0 | (c >> 6));
+                    out[j++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    char low;
+                    if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(low = str.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, low);
+                        out[j++] = (byte) (0xF0 | (codePoint >> 18));
+                        out[j++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                        out[j++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                        out[j++] = (byte) (0x80 | (codePoint & 0x3F));
+                        i++;
+                    } else {
+                        out[j++] = '?';
+                    }
+                } else {
+                    out[j++] = (byte) (0xE0 | (c >> 12));
+                    out[j++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    out[j++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return j;
+        }
     }
 }
@@ -104,6 +104,46 @@ public class HexUtils {
         return encodeHexStr(data, toLowerCase ? DIGITS_LOWER : DIGITS_UPPER);
     }
 
+    /**
+     * 将字节数组的指定部分转换为十六进制字符，写入给定的字符数组，不产生新的对象
+     *
+     * @param data        byte[]
+     * @param offset      数据起始位置
+     * @param length      数据长度
+     * @param out         输出的字符数组，剩余空间不少于 length * 2
+     * @param outOffset   输出起始位置
+     * @param toLowerCase <code>true</code> 传换成小写格式 ， <code>false</code> 传换成大写格式
+     * @return 写入的字符数
+     */
+    public static int encodeHex(byte[] data, int offset, int length, char[] out, int outOffset, boolean toLowerCase) {
+        char[] toDigits = toLowerCase ? DIGITS_LOWER : DIGITS_UPPER;
+        for (int i = offset, j = outOffset, end = offset + length; i < end; i++) {
+            out[j++] = toDigits[(0xF0 & data[i]) >>> 4];
+            out[j++] = toDigits[0x0F & data[i]];
+        }
+        return length << 1;
+    }
+
+    /**
+     * 将字节数组的指定部分转换为十六进制ASCII字节，写入给定的字节数组，不产生新的对象
+     *
+     * @param data        byte[]
+     * @param offset      数据起始位置
+     * @param length      数据长度
+     * @param out         输出的字节数组，剩余空间不少于 length * 2
+     * @param outOffset   输出起始位置
+     * @param toLowerCase <code>true</code> 传换成小写格式 ， <code>false</code> 传换成大写格式
+     * @return 写入的字节数
+     */
+    public static int encodeHex(byte[] data, int offset, int length, byte[] out, int outOffset, boolean toLowerCase) {
+        char[] toDigits = toLowerCase ? DIGITS_LOWER : DIGITS_UPPER;
+        for (int i = offset, j = outOffset, end = offset + length; i < end; i++) {
+            out[j++] = (byte) toDigits[(0xF0 & data[i]) >>> 4];
+            out[j++] = (byte) toDigits[0x0F & data[i]];
+        }
+        return length << 1;
+    }
+
     //---------------------------------------------------------------------------------------------------- decode
 
     /**
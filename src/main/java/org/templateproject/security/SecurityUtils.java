@@ -1,15 +1,18 @@
 package org.templateproject.security;
 
 import org.templateproject.security.asymmetric.AsymmetricAlgorithm;
+import org.templateproject.security.asymmetric.SignAlgorithm;
 import org.templateproject.security.digest.DigestAlgorithm;
 import org.templateproject.security.digest.Digester;
+import org.templateproject.security.digest.DigesterPool;
 import org.templateproject.security.digest.HMac;
 import org.templateproject.security.digest.HmacAlgorithm;
 import org.templateproject.security.exception.CryptoException;
+import org.templateproject.security.symmetric.KeyDerivationCache;
 import org.templateproject.security.symmetric.SymmetricAlgorithm;
 import org.templateproject.security.symmetric.SymmetricCriptor;
+import org.templateproject.security.zsupport.ProviderRegistry;
 
-import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.DESKeySpec;
@@ -46,9 +49,24 @@ public class SecurityUtils {
      * Default Keysize 1024
      * Keysize must be a multiple of 64, ranging from 512 to 1024 (inclusive).
      * </pre>
+     * 椭圆曲线算法的默认长度见 {@link AsymmetricAlgorithm#getDefaultKeySize()}
      */
     public static final int DEFAULT_KEY_SIZE = 1024;
 
+    /**
+     * 默认PBKDF2算法
+     */
+    public static final String DEFAULT_PBKDF2_ALGORITHM = "PBKDF2WithHmacSHA256";
+    /**
+     * 默认PBKDF2迭代次数
+     */
+    public static final int DEFAULT_PBKDF2_ITERATIONS = 100000;
+
+    /**
+     * 口令派生密钥缓存
+     */
+    private static final KeyDerivationCache KEY_DERIVATION_CACHE = new KeyDerivationCache();
+
     /**
      * 生成 {@link SecretKey}
      *
@@ -58,7 +76,7 @@ public class SecurityUtils {
     public static SecretKey generateKey(String algorithm) {
         SecretKey secretKey;
         try {
-            secretKey = KeyGenerator.getInstance(algorithm).generateKey();
+            secretKey = ProviderRegistry.getKeyGenerator(getMainAlgorithm(algorithm)).generateKey();
         } catch (NoSuchAlgorithmException e) {
             throw new CryptoException(e);
         }
@@ -76,6 +94,7 @@ public class SecurityUtils {
         if (algorithm == null || algorithm.length() == 0 || algorithm.trim().length() == 0) {
             throw new IllegalArgumentException("Algorithm is blank!");
         }
+        algorithm = getMainAlgorithm(algorithm);
         SecretKey secretKey;
         if (algorithm.startsWith("PBE")) {
             // PBE密钥
@@ -90,6 +109,21 @@ public class SecurityUtils {
         return secretKey;
     }
 
+    /**
+     * 获得转换名称中的密钥算法，例如 "AES/GCM/NoPadding" 返回 "AES"，"ChaCha20-Poly1305" 返回 "ChaCha20"
+     *
+     * @param algorithm 算法或转换名称
+     * @return 密钥算法
+     */
+    public static String getMainAlgorithm(String algorithm) {
+        int slashIndex = algorithm.indexOf('/');
+        String mainAlgorithm = slashIndex > 0 ? algorithm.substring(0, slashIndex) : algorithm;
+        if ("ChaCha20-Poly1305".equalsIgnoreCase(mainAlgorithm)) {
+            return "ChaCha20";
+        }
+        return mainAlgorithm;
+    }
+
     /**
      * 生成 {@link SecretKey}
      *
@@ -135,6 +169,88 @@ public class SecurityUtils {
         return generateKey(algorithm, keySpec);
     }
 
+    /**
+     * 使用PBKDF2从口令派生 {@link SecretKey}，使用 {@link #DEFAULT_PBKDF2_ALGORITHM}，结果经 {@link #getKeyDerivationCache()} 缓存
+     *
+     * @param algorithm  派生出的密钥所用的算法，例如 AES
+     * @param password   口令
+     * @param salt       盐
+     * @param iterations 迭代次数
+     * @param keyLength  密钥长度（位），例如AES-256为256
+     * @return {@link SecretKey}
+     */
+    public static SecretKey generatePBKDF2Key(String algorithm, char[] password, byte[] salt, int iterations, int keyLength) {
+        return generatePBKDF2Key(DEFAULT_PBKDF2_ALGORITHM, algorithm, password, salt, iterations, keyLength);
+    }
+
+    /**
+     * 使用PBKDF2从口令派生 {@link SecretKey}，结果经 {@link #getKeyDerivationCache()} 缓存
+     *
+     * @param pbkdf2Algorithm PBKDF2算法，例如 PBKDF2WithHmacSHA256
+     * @param algorithm       派生出的密钥所用的算法，例如 AES
+     * @param password        口令
+     * @param salt            盐
+     * @param iterations      迭代次数
+     * @param keyLength       密钥长度（位），例如AES-256为256
+     * @return {@link SecretKey}
+     */
+    public static SecretKey generatePBKDF2Key(String pbkdf2Algorithm, String algorithm, char[] password, byte[] salt, int iterations, int keyLength) {
+        if (null == password || null == salt) {
+            throw new IllegalArgumentException("Password and salt must not be null!");
+        }
+        if (iterations < 1 || keyLength < 1) {
+            throw new IllegalArgumentException("Iterations and key length must be positive!");
+        }
+        SecretKey derived = KEY_DERIVATION_CACHE.get(pbkdf2Algorithm, password, salt, iterations, keyLength);
+        return new SecretKeySpec(derived.getEncoded(), getMainAlgorithm(algorithm));
+    }
+
+    /**
+     * 获得口令派生密钥缓存，用于查看命中、未命中和淘汰次数
+     *
+     * @return {@link KeyDerivationCache}
+     */
+    public static KeyDerivationCache getKeyDerivationCache() {
+        return KEY_DERIVATION_CACHE;
+    }
+
+    /**
+     * 设置创建摘要、HMAC、加解密和签名等对象时优先使用的Provider，见 {@link ProviderRegistry}
+     *
+     * @param provider Provider，<code>null</code>表示只使用系统Provider列表
+     */
+    public static void setPreferredProvider(Provider provider) {
+        ProviderRegistry.setPreferredProvider(provider);
+    }
+
+    /**
+     * 预先解析本工具支持的所有算法的Provider，通常在应用启动时调用一次，避免首次使用时的解析开销<br>
+     * 当前运行环境不支持的算法被忽略
+     */
+    public static void warmUpProviders() {
+        for (DigestAlgorithm algorithm : DigestAlgorithm.values()) {
+            warmUpProvider(ProviderRegistry.MESSAGE_DIGEST, algorithm.getValue());
+        }
+        for (HmacAlgorithm algorithm : HmacAlgorithm.values()) {
+            warmUpProvider(ProviderRegistry.MAC, algorithm.getValue());
+        }
+        for (SymmetricAlgorithm algorithm : SymmetricAlgorithm.values()) {
+            warmUpProvider(ProviderRegistry.CIPHER, algorithm.getValue());
+        }
+        for (AsymmetricAlgorithm algorithm : AsymmetricAlgorithm.values()) {
+            warmUpProvider(ProviderRegistry.CIPHER, algorithm.getValue());
+            warmUpProvider(ProviderRegistry.KEY_FACTORY, algorithm.getValue());
+        }
+    }
+
+    private static void warmUpProvider(String type, String algorithm) {
+        try {
+            ProviderRegistry.getProvider(type, algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            // 当前环境不支持，使用时再报错
+        }
+    }
+
     /**
      * 生成 {@link SecretKey}
      *
@@ -144,7 +260,7 @@ public class SecurityUtils {
      */
     public static SecretKey generateKey(String algorithm, KeySpec keySpec) {
         try {
-            SecretKeyFactory keyFactory = SecretKeyFactory.getInstance(algorithm);
+            SecretKeyFactory keyFactory = ProviderRegistry.getSecretKeyFactory(algorithm);
             return keyFactory.generateSecret(keySpec);
         } catch (Exception e) {
             throw new CryptoException(e);
@@ -161,7 +277,7 @@ public class SecurityUtils {
     public static PrivateKey generatePrivateKey(String algorithm, byte[] key) {
         PKCS8EncodedKeySpec pkcs8KeySpec = new PKCS8EncodedKeySpec(key);
         try {
-            return KeyFactory.getInstance(algorithm).generatePrivate(pkcs8KeySpec);
+            return ProviderRegistry.getKeyFactory(algorithm).generatePrivate(pkcs8KeySpec);
         } catch (Exception e) {
             throw new CryptoException(e);
         }
@@ -193,7 +309,7 @@ public class SecurityUtils {
     public static PublicKey generatePublicKey(String algorithm, byte[] key) {
         X509EncodedKeySpec x509KeySpec = new X509EncodedKeySpec(key);
         try {
-            return KeyFactory.getInstance(algorithm).generatePublic(x509KeySpec);
+            return ProviderRegistry.getKeyFactory(algorithm).generatePublic(x509KeySpec);
         } catch (Exception e) {
             throw new CryptoException(e);
         }
@@ -206,7 +322,7 @@ public class SecurityUtils {
      * @return {@link KeyPair}
      */
     public static KeyPair generateKeyPair(String algorithm) {
-        return generateKeyPair(algorithm, DEFAULT_KEY_SIZE, null);
+        return generateKeyPair(algorithm, 0, null);
     }
 
     /**
@@ -224,20 +340,21 @@ public class SecurityUtils {
      * 生成用于非对称加密的公钥和私钥
      *
      * @param algorithm 非对称加密算法
-     * @param keySize   密钥模（modulus ）长度
+     * @param keySize   密钥模（modulus ）长度，椭圆曲线算法为曲线位数，小于等于0时使用 {@link AsymmetricAlgorithm#getDefaultKeySize()}
      * @param seed      种子
      * @return {@link KeyPair}
      */
     public static KeyPair generateKeyPair(String algorithm, int keySize, byte[] seed) {
         KeyPairGenerator keyPairGen;
         try {
-            keyPairGen = KeyPairGenerator.getInstance(algorithm);
+            keyPairGen = ProviderRegistry.getKeyPairGenerator(algorithm);
         } catch (NoSuchAlgorithmException e) {
             throw new CryptoException(e);
         }
 
         if (keySize <= 0) {
-            keySize = DEFAULT_KEY_SIZE;
+            AsymmetricAlgorithm asymmetricAlgorithm = AsymmetricAlgorithm.of(algorithm);
+            keySize = null == asymmetricAlgorithm ? DEFAULT_KEY_SIZE : asymmetricAlgorithm.getDefaultKeySize();
         }
         if (null != seed) {
             SecureRandom random = new SecureRandom(seed);
@@ -256,15 +373,45 @@ public class SecurityUtils {
      * @return {@link Signature}
      */
     public static Signature generateSignature(AsymmetricAlgorithm asymmetricAlgorithm, DigestAlgorithm digestAlgorithm) {
-        String digestPart = (null == digestAlgorithm) ? "NONE" : digestAlgorithm.name();
+        String digestPart = (null == digestAlgorithm) ? "NONE" : getSignatureDigestName(digestAlgorithm);
         String algorithm = digestPart + "with" + asymmetricAlgorithm.getValue();
         try {
-            return Signature.getInstance(algorithm);
+            return ProviderRegistry.getSignature(algorithm);
         } catch (NoSuchAlgorithmException e) {
             throw new CryptoException(e);
         }
     }
 
+    /**
+     * 生成签名对象，RSASSA-PSS等带参数的算法同时设置签名参数<br>
+     * 签名对象通过 {@link ProviderRegistry} 创建，未指定优先Provider时在init时按密钥类型选择Provider
+     *
+     * @param signAlgorithm {@link SignAlgorithm} 签名算法
+     * @return {@link Signature}
+     */
+    public static Signature generateSignature(SignAlgorithm signAlgorithm) {
+        try {
+            Signature signature = ProviderRegistry.getSignature(signAlgorithm.getValue());
+            if (null != signAlgorithm.getParameterSpec()) {
+                signature.setParameter(signAlgorithm.getParameterSpec());
+            }
+            return signature;
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 获得签名算法名称中的摘要部分，例如 SHA-256 为 SHA256，SHA-512/256 为 SHA512/256，SHA3-256 保持不变
+     *
+     * @param digestAlgorithm {@link DigestAlgorithm}
+     * @return 签名算法名称中的摘要部分
+     */
+    private static String getSignatureDigestName(DigestAlgorithm digestAlgorithm) {
+        String value = digestAlgorithm.getValue();
+        return value.startsWith("SHA3-") ? value : value.replace("-", "");
+    }
+
     /**
      * 读取密钥库(Java Key Store，JKS) KeyStore文件<br>
      * KeyStore文件用于数字证书的密钥对保存<br>
@@ -374,6 +521,61 @@ public class SecurityUtils {
         return new SymmetricCriptor(SymmetricAlgorithm.AES, key);
     }
 
+    /**
+     * AES-GCM认证加密，生成随机KEY。每次加密自动生成随机数，密文自带随机数和认证标签<br>
+     * 例：<br>
+     * AES-GCM加密：aesGcm().encrypt(data)<br>
+     * AES-GCM解密：aesGcm().decrypt(data)<br>
+     *
+     * @return {@link SymmetricCriptor}
+     */
+    public static SymmetricCriptor aesGcm() {
+        return new SymmetricCriptor(SymmetricAlgorithm.AES_GCM);
+    }
+
+    /**
+     * AES-GCM认证加密<br>
+     * 例：<br>
+     * AES-GCM加密：aesGcm(key).encrypt(data)<br>
+     * AES-GCM解密：aesGcm(key).decrypt(data)<br>
+     *
+     * @param key 密钥，长度为16、24或32字节
+     * @return {@link SymmetricCriptor}
+     */
+    public static SymmetricCriptor aesGcm(byte[] key) {
+        return new SymmetricCriptor(SymmetricAlgorithm.AES_GCM, key);
+    }
+
+    /**
+     * 使用PBKDF2从口令派生密钥的对称加密，迭代次数为 {@link #DEFAULT_PBKDF2_ITERATIONS}<br>
+     * 例：<br>
+     * 加密：pbkdf2(SymmetricAlgorithm.AES_GCM, password, salt, 256).encrypt(data)<br>
+     * 解密：pbkdf2(SymmetricAlgorithm.AES_GCM, password, salt, 256).decrypt(data)<br>
+     *
+     * @param algorithm 算法
+     * @param password  口令
+     * @param salt      盐，加密和解密需使用相同的盐
+     * @param keyLength 密钥长度（位）
+     * @return {@link SymmetricCriptor}
+     */
+    public static SymmetricCriptor pbkdf2(SymmetricAlgorithm algorithm, char[] password, byte[] salt, int keyLength) {
+        return pbkdf2(algorithm, password, salt, DEFAULT_PBKDF2_ITERATIONS, keyLength);
+    }
+
+    /**
+     * 使用PBKDF2从口令派生密钥的对称加密
+     *
+     * @param algorithm  算法
+     * @param password   口令
+     * @param salt       盐，加密和解密需使用相同的盐
+     * @param iterations 迭代次数
+     * @param keyLength  密钥长度（位）
+     * @return {@link SymmetricCriptor}
+     */
+    public static SymmetricCriptor pbkdf2(SymmetricAlgorithm algorithm, char[] password, byte[] salt, int iterations, int keyLength) {
+        return new SymmetricCriptor(algorithm, generatePBKDF2Key(algorithm.getValue(), password, salt, iterations, keyLength).getEncoded());
+    }
+
     /**
      * DES加密，生成随机KEY。注意解密时必须使用相同 {@link SymmetricCriptor}对象或者使用相同KEY<br>
      * 例：<br>
@@ -419,7 +621,7 @@ public class SecurityUtils {
      * @return MD5字符串
      */
     public static String md5(String data) {
-        return new Digester(DigestAlgorithm.MD5).digestHex(data);
+        return DigesterPool.get(DigestAlgorithm.MD5).digestHex(data);
     }
 
     /**
@@ -428,7 +630,7 @@ public class SecurityUtils {
      * @return MD5字符串
      */
     public static String md5(InputStream data) {
-        return new Digester(DigestAlgorithm.MD5).digestHex(data);
+        return DigesterPool.get(DigestAlgorithm.MD5).digestHex(data);
     }
 
     /**
@@ -437,7 +639,7 @@ public class SecurityUtils {
      * @return MD5字符串
      */
     public static String md5(File dataFile) {
-        return new Digester(DigestAlgorithm.MD5).digestHex(dataFile);
+        return DigesterPool.get(DigestAlgorithm.MD5).digestHex(dataFile);
     }
 
     /**
@@ -458,7 +660,7 @@ public class SecurityUtils {
      * @return SHA1字符串
      */
     public static String sha1(String data) {
-        return new Digester(DigestAlgorithm.SHA1).digestHex(data);
+        return DigesterPool.get(DigestAlgorithm.SHA1).digestHex(data);
     }
 
     /**
@@ -467,7 +669,7 @@ public class SecurityUtils {
      * @return SHA1字符串
      */
     public static String sha1(InputStream data) {
-        return new Digester(DigestAlgorithm.SHA1).digestHex(data);
+        return DigesterPool.get(DigestAlgorithm.SHA1).digestHex(data);
     }
 
     /**
@@ -476,7 +678,7 @@ public class SecurityUtils {
      * @return SHA1字符串
      */
     public static String sha1(File dataFile) {
-        return new Digester(DigestAlgorithm.SHA1).digestHex(dataFile);
+        return DigesterPool.get(DigestAlgorithm.SHA1).digestHex(dataFile);
     }
 
     /**
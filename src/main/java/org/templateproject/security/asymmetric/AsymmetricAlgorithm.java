@@ -2,20 +2,55 @@ package org.templateproject.security.asymmetric;
 
 /**
  * 非对称算法类型<br>
+ * EdDSA（Ed25519、Ed448）和XDH（X25519、X448）需要 JDK 15+ 或提供这些算法的Provider，EC签名和ECDH由各版本JDK自带
  * 
  * @author Looly
  *
  */
 public enum AsymmetricAlgorithm {
-	RSA("RSA"), DSA("DSA");
+	RSA("RSA", 1024), DSA("DSA", 1024), 
+	/** 椭圆曲线，默认P-256，用于ECDSA签名和ECDH密钥协商 */
+	EC("EC", 256), 
+	Ed25519("Ed25519", 255), 
+	Ed448("Ed448", 448), 
+	/** 仅用于密钥协商 */
+	X25519("X25519", 255), 
+	/** 仅用于密钥协商 */
+	X448("X448", 448);
 
 	private String value;
+	private int defaultKeySize;
 
-	AsymmetricAlgorithm(String value) {
+	AsymmetricAlgorithm(String value, int defaultKeySize) {
 		this.value = value;
+		this.defaultKeySize = defaultKeySize;
 	}
 
 	public String getValue() {
 		return this.value;
 	}
+
+	/**
+	 * 获得默认密钥长度，RSA/DSA为模长，椭圆曲线为曲线位数
+	 * 
+	 * @return 默认密钥长度
+	 */
+	public int getDefaultKeySize() {
+		return this.defaultKeySize;
+	}
+
+	/**
+	 * 根据算法名称查找，忽略大小写
+	 * 
+	 * @param value 算法名称
+	 * @return {@link AsymmetricAlgorithm}，未找到返回<code>null</code>
+	 */
+	public static AsymmetricAlgorithm of(String value) {
+		for (AsymmetricAlgorithm algorithm : values()) {
+			if (algorithm.value.equalsIgnoreCase(value)) {
+				return algorithm;
+			}
+		}
+		return null;
+	}
 }
@@ -5,21 +5,35 @@ import org.templateproject.security.SecurityUtils;
 import org.templateproject.security.base64.Base64;
 import org.templateproject.security.exception.CryptoException;
 import org.templateproject.security.symmetric.SymmetricAlgorithm;
+import org.templateproject.security.zsupport.ByteBufferHandler;
 import org.templateproject.security.zsupport.FastByteArrayOutputStream;
+import org.templateproject.security.zsupport.IoUtils;
+import org.templateproject.security.zsupport.ObjectPool;
+import org.templateproject.security.zsupport.ProviderRegistry;
 
 import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.security.*;
+import java.security.spec.PSSParameterSpec;
+import java.util.Arrays;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 非对称加密算法<br>
  * 1、签名：使用私钥加密，公钥解密。用于让所有公钥所有者验证私钥所有者的身份并且用来防止私钥所有者发布的内容被篡改，但是不用来保证内容不被他人获得。<br>
- * 2、加密：用公钥加密，私钥解密。用于向公钥所有者发布信息,这个信息可能被他人篡改,但是无法被他人获得。
+ * 2、加密：用公钥加密，私钥解密。用于向公钥所有者发布信息,这个信息可能被他人篡改,但是无法被他人获得。<br>
+ * 此对象线程安全：签名、验证、加密和解密每次从池中借用已按密钥初始化好的 {@link Signature} 或 {@link Cipher}，
+ * 同一实例可在多个线程中同时使用，设置密钥或签名对象后池随之重建。
  *
  * @author Looly
  */
@@ -38,16 +52,37 @@ public class AsymmetricCriptor {
      */
     protected PrivateKey privateKey;
     /**
-     * Cipher负责完成加密或解密工作
+     * Cipher原型，用于确定创建加密或解密引擎的算法，首次使用时创建（DSA等仅用于签名的算法没有Cipher）
      */
     protected Cipher clipher;
     /**
-     * 签名，用于签名和验证
+     * 签名原型，用于确定创建签名和验证引擎的算法、Provider和参数
      */
     protected Signature signature;
-
+    /**
+     * 原用于串行化对 {@link #clipher} 和 {@link #signature} 的访问，现在每次操作从池中借用独立的引擎，此类不再使用该锁
+     *
+     * @deprecated 仅为兼容子类保留，将在后续版本中移除
+     */
+    @Deprecated
     protected Lock lock = new ReentrantLock();
 
+    /**
+     * 已使用私钥完成 initSign 的签名引擎池
+     */
+    private volatile ObjectPool<Signature> signPool;
+    /**
+     * 已使用公钥完成 initVerify 的验证引擎池
+     */
+    private volatile ObjectPool<Signature> verifyPool;
+    /**
+     * 按模式和密钥类型区分的、已完成初始化的 {@link Cipher} 池
+     */
+    private volatile ObjectPool<Cipher> privateEncryptPool;
+    private volatile ObjectPool<Cipher> publicEncryptPool;
+    private volatile ObjectPool<Cipher> privateDecryptPool;
+    private volatile ObjectPool<Cipher> publicDecryptPool;
+
     // ------------------------------------------------------------------ Constructor start
 
     /**
@@ -81,6 +116,21 @@ public class AsymmetricCriptor {
         this(algorithm.getValue(), privateKey, publicKey);
     }
 
+    /**
+     * 构造，使用指定的签名算法
+     * <p>
+     * 私钥和公钥同时为空时生成一对新的私钥和公钥<br>
+     * 私钥和公钥可以单独传入一个，如此则只能使用此钥匙来做加密或者解密
+     *
+     * @param algorithm     {@link AsymmetricAlgorithm}
+     * @param signAlgorithm {@link SignAlgorithm} 签名算法，<code>null</code>时使用 {@link SignAlgorithm#getDefault(AsymmetricAlgorithm)}
+     * @param privateKey    私钥
+     * @param publicKey     公钥
+     */
+    public AsymmetricCriptor(AsymmetricAlgorithm algorithm, SignAlgorithm signAlgorithm, byte[] privateKey, byte[] publicKey) {
+        init(algorithm.getValue(), signAlgorithm, privateKey, publicKey);
+    }
+
     /**
      * 构造
      * <p>
@@ -100,7 +150,8 @@ public class AsymmetricCriptor {
      * 初始化<br>
      * 私钥和公钥同时为空时生成一对新的私钥和公钥<br>
      * 私钥和公钥可以单独传入一个，如此则只能使用此钥匙来做加密或者解密<br>
-     * 签名默认使用MD5摘要算法，如果需要自定义签名算法，调用 {@link AsymmetricCriptor#setSignature(Signature)}设置签名对象
+     * 签名使用 {@link SignAlgorithm#getDefault(AsymmetricAlgorithm)}，
+     * 如果需要自定义签名算法，调用 {@link #setSignAlgorithm(SignAlgorithm)} 或 {@link AsymmetricCriptor#setSignature(Signature)}设置签名对象
      *
      * @param algorithm  算法
      * @param privateKey 私钥
@@ -108,13 +159,29 @@ public class AsymmetricCriptor {
      * @return {@link AsymmetricCriptor}
      */
     public AsymmetricCriptor init(String algorithm, byte[] privateKey, byte[] publicKey) {
+        return init(algorithm, null, privateKey, publicKey);
+    }
+
+    /**
+     * 初始化<br>
+     * 私钥和公钥同时为空时生成一对新的私钥和公钥<br>
+     * 私钥和公钥可以单独传入一个，如此则只能使用此钥匙来做加密或者解密
+     *
+     * @param algorithm     算法
+     * @param signAlgorithm {@link SignAlgorithm} 签名算法，<code>null</code>时使用 {@link SignAlgorithm#getDefault(AsymmetricAlgorithm)}，
+     *                      仅用于密钥协商的算法没有默认签名算法
+     * @param privateKey    私钥
+     * @param publicKey     公钥
+     * @return {@link AsymmetricCriptor}
+     */
+    public AsymmetricCriptor init(String algorithm, SignAlgorithm signAlgorithm, byte[] privateKey, byte[] publicKey) {
         this.algorithm = algorithm;
-        try {
-            this.clipher = Cipher.getInstance(algorithm);
-            this.signature = Signature.getInstance("MD5with" + algorithm);//默认签名算法
-        } catch (Exception e) {
-            throw new CryptoException(e);
+        this.clipher = null;
+        if (null == signAlgorithm) {
+            AsymmetricAlgorithm asymmetricAlgorithm = AsymmetricAlgorithm.of(algorithm);
+            signAlgorithm = null == asymmetricAlgorithm ? null : SignAlgorithm.getDefault(asymmetricAlgorithm);
         }
+        this.signature = null == signAlgorithm ? null : SecurityUtils.generateSignature(signAlgorithm);
 
         if (null == privateKey && null == publicKey) {
             initKeys();
@@ -125,6 +192,7 @@ public class AsymmetricCriptor {
             if (null != publicKey) {
                 this.publicKey = SecurityUtils.generatePublicKey(algorithm, publicKey);
             }
+            resetPools();
         }
         return this;
     }
@@ -136,6 +204,7 @@ public class AsymmetricCriptor {
         KeyPair keyPair = SecurityUtils.generateKeyPair(this.algorithm);
         this.publicKey = keyPair.getPublic();
         this.privateKey = keyPair.getPrivate();
+        resetPools();
         return this;
     }
 
@@ -148,10 +217,13 @@ public class AsymmetricCriptor {
      * @return 签名
      */
     public byte[] sign(byte[] data) {
+        ObjectPool<Signature> pool = this.signPool;
+        Signature engine = pool.acquire();
         try {
-            signature.initSign(this.privateKey);
-            signature.update(data);
-            return signature.sign();
+            engine.update(data);
+            byte[] result = engine.sign();
+            pool.release(engine);
+            return result;
         } catch (Exception e) {
             throw new CryptoException(e);
         }
@@ -165,15 +237,175 @@ public class AsymmetricCriptor {
      * @return 是否验证通过
      */
     public boolean verify(byte[] data, byte[] sign) {
+        ObjectPool<Signature> pool = this.verifyPool;
+        Signature engine = pool.acquire();
         try {
-            signature.initVerify(this.publicKey);
-            signature.update(data);
-            return signature.verify(sign);
+            engine.update(data);
+            boolean result = engine.verify(sign);
+            pool.release(engine);
+            return result;
         } catch (Exception e) {
             throw new CryptoException(e);
         }
     }
 
+    /**
+     * 用私钥对流中的数据生成数字签名，按块读取，内存占用与数据大小无关，结果与 {@link #sign(byte[])} 相同<br>
+     * 流不会被关闭。注意：Ed25519/Ed448 的JDK实现会在内部缓存全部数据
+     *
+     * @param data {@link InputStream}
+     * @return 签名
+     */
+    public byte[] sign(final InputStream data) {
+        return sign(new SignatureInput() {
+            @Override
+            void feed(Signature engine) throws IOException, SignatureException {
+                update(engine, data);
+            }
+        });
+    }
+
+    /**
+     * 用公钥检验流中数据的数字签名，按块读取，内存占用与数据大小无关<br>
+     * 流不会被关闭
+     *
+     * @param data {@link InputStream}
+     * @param sign 签名
+     * @return 是否验证通过
+     */
+    public boolean verify(final InputStream data, byte[] sign) {
+        return verify(new SignatureInput() {
+            @Override
+            void feed(Signature engine) throws IOException, SignatureException {
+                update(engine, data);
+            }
+        }, sign);
+    }
+
+    /**
+     * 用私钥对文件生成数字签名，较大的文件分段映射到内存后直接交给签名对象，结果与 {@link #sign(byte[])} 相同
+     *
+     * @param file 文件
+     * @return 签名
+     */
+    public byte[] sign(final File file) {
+        return sign(new SignatureInput() {
+            @Override
+            void feed(Signature engine) throws IOException {
+                update(engine, file);
+            }
+        });
+    }
+
+    /**
+     * 用公钥检验文件的数字签名，较大的文件分段映射到内存后直接交给签名对象
+     *
+     * @param file 文件
+     * @param sign 签名
+     * @return 是否验证通过
+     */
+    public boolean verify(final File file, byte[] sign) {
+        return verify(new SignatureInput() {
+            @Override
+            void feed(Signature engine) throws IOException {
+                update(engine, file);
+            }
+        }, sign);
+    }
+
+    /**
+     * 用私钥对通道中的剩余数据生成数字签名，通道需为阻塞模式，不会被关闭，见 {@link IoUtils#read(ReadableByteChannel, ByteBufferHandler)}
+     *
+     * @param channel {@link ReadableByteChannel}
+     * @return 签名
+     */
+    public byte[] sign(final ReadableByteChannel channel) {
+        return sign(new SignatureInput() {
+            @Override
+            void feed(Signature engine) throws IOException {
+                IoUtils.read(channel, newHandler(engine));
+            }
+        });
+    }
+
+    /**
+     * 用公钥检验通道中剩余数据的数字签名，通道需为阻塞模式，不会被关闭
+     *
+     * @param channel {@link ReadableByteChannel}
+     * @param sign    签名
+     * @return 是否验证通过
+     */
+    public boolean verify(final ReadableByteChannel channel, byte[] sign) {
+        return verify(new SignatureInput() {
+            @Override
+            void feed(Signature engine) throws IOException {
+                IoUtils.read(channel, newHandler(engine));
+            }
+        }, sign);
+    }
+
+    /**
+     * 用私钥对 {@link ByteBuffer} 中的剩余数据生成数字签名，支持堆内和堆外缓冲，数据直接交给 {@link Signature} 而不复制到堆内数组<br>
+     * 完成后缓冲的position移动到limit
+     *
+     * @param data 数据缓冲
+     * @return 签名
+     */
+    public byte[] sign(final ByteBuffer data) {
+        return sign(new SignatureInput() {
+            @Override
+            void feed(Signature engine) throws SignatureException {
+                engine.update(data);
+            }
+        });
+    }
+
+    /**
+     * 用公钥检验 {@link ByteBuffer} 中剩余数据的数字签名，完成后缓冲的position移动到limit
+     *
+     * @param data 数据缓冲
+     * @param sign 签名
+     * @return 是否验证通过
+     */
+    public boolean verify(final ByteBuffer data, byte[] sign) {
+        return verify(new SignatureInput() {
+            @Override
+            void feed(Signature engine) throws SignatureException {
+                engine.update(data);
+            }
+        }, sign);
+    }
+
+    // --------------------------------------------------------------------------------- Key Agreement
+
+    /**
+     * 使用本方私钥和对方公钥进行密钥协商（ECDH、X25519、X448），双方得到相同的共享密钥<br>
+     * 共享密钥不应直接用作对称密钥，应再经过摘要或KDF派生
+     *
+     * @param otherPublicKey 对方公钥
+     * @return 共享密钥bytes
+     */
+    public byte[] agree(PublicKey otherPublicKey) {
+        try {
+            KeyAgreement keyAgreement = ProviderRegistry.getKeyAgreement(getKeyAgreementAlgorithm(this.algorithm));
+            keyAgreement.init(getKeyByType(KeyType.PrivateKey));
+            keyAgreement.doPhase(otherPublicKey, true);
+            return keyAgreement.generateSecret();
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 使用本方私钥和对方公钥进行密钥协商
+     *
+     * @param otherPublicKey 对方公钥（X.509编码）
+     * @return 共享密钥bytes
+     */
+    public byte[] agree(byte[] otherPublicKey) {
+        return agree(SecurityUtils.generatePublicKey(this.algorithm, otherPublicKey));
+    }
+
     // --------------------------------------------------------------------------------- Encrypt
 
     /**
@@ -184,15 +416,14 @@ public class AsymmetricCriptor {
      * @return 加密后的bytes
      */
     public byte[] encrypt(byte[] data, KeyType keyType) {
-        lock.lock();
+        ObjectPool<Cipher> pool = getCipherPool(Cipher.ENCRYPT_MODE, keyType);
+        Cipher engine = pool.acquire();
         try {
-            clipher.init(Cipher.ENCRYPT_MODE, getKeyByType(keyType));
-            return clipher.doFinal(data);
-
+            byte[] result = engine.doFinal(data);
+            pool.release(engine);
+            return result;
         } catch (Exception e) {
             throw new CryptoException(e);
-        } finally {
-            lock.unlock();
         }
     }
 
@@ -236,6 +467,47 @@ public class AsymmetricCriptor {
         }
     }
 
+    /**
+     * 加密 {@link ByteBuffer} 中的剩余数据，支持堆内和堆外缓冲，数据直接交给 {@link Cipher} 而不复制到堆内数组<br>
+     * 完成后缓冲的position移动到limit
+     *
+     * @param data    被加密的数据缓冲
+     * @param keyType 私钥或公钥 {@link KeyType}
+     * @return 加密后的bytes
+     */
+    public byte[] encrypt(ByteBuffer data, KeyType keyType) {
+        ObjectPool<Cipher> pool = getCipherPool(Cipher.ENCRYPT_MODE, keyType);
+        Cipher engine = pool.acquire();
+        try {
+            byte[] result = doFinal(engine, data);
+            pool.release(engine);
+            return result;
+        } catch (Exception e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 加密 {@link ByteBuffer} 中的剩余数据，结果写入输出缓冲的当前位置<br>
+     * 输入和输出均支持堆内和堆外缓冲，输出缓冲剩余空间需不小于 {@link Cipher#getOutputSize(int)}
+     *
+     * @param data    被加密的数据缓冲
+     * @param out     输出缓冲
+     * @param keyType 私钥或公钥 {@link KeyType}
+     * @return 写入输出缓冲的字节数
+     */
+    public int encrypt(ByteBuffer data, ByteBuffer out, KeyType keyType) {
+        ObjectPool<Cipher> pool = getCipherPool(Cipher.ENCRYPT_MODE, keyType);
+        Cipher engine = pool.acquire();
+        try {
+            int result = engine.doFinal(data, out);
+            pool.release(engine);
+            return result;
+        } catch (Exception e) {
+            throw new CryptoException(e);
+        }
+    }
+
     // --------------------------------------------------------------------------------- Decrypt
 
     /**
@@ -246,14 +518,14 @@ public class AsymmetricCriptor {
      * @return 解密后的bytes
      */
     public byte[] decrypt(byte[] bytes, KeyType keyType) {
-        lock.lock();
+        ObjectPool<Cipher> pool = getCipherPool(Cipher.DECRYPT_MODE, keyType);
+        Cipher engine = pool.acquire();
         try {
-            clipher.init(Cipher.DECRYPT_MODE, getKeyByType(keyType));
-            return clipher.doFinal(bytes);
+            byte[] result = engine.doFinal(bytes);
+            pool.release(engine);
+            return result;
         } catch (Exception e) {
             throw new CryptoException(e);
-        } finally {
-            lock.unlock();
         }
     }
 
@@ -272,6 +544,47 @@ public class AsymmetricCriptor {
         }
     }
 
+    /**
+     * 解密 {@link ByteBuffer} 中的剩余数据，支持堆内和堆外缓冲，数据直接交给 {@link Cipher} 而不复制到堆内数组<br>
+     * 完成后缓冲的position移动到limit
+     *
+     * @param data    被解密的数据缓冲
+     * @param keyType 私钥或公钥 {@link KeyType}
+     * @return 解密后的bytes
+     */
+    public byte[] decrypt(ByteBuffer data, KeyType keyType) {
+        ObjectPool<Cipher> pool = getCipherPool(Cipher.DECRYPT_MODE, keyType);
+        Cipher engine = pool.acquire();
+        try {
+            byte[] result = doFinal(engine, data);
+            pool.release(engine);
+            return result;
+        } catch (Exception e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 解密 {@link ByteBuffer} 中的剩余数据，结果写入输出缓冲的当前位置<br>
+     * 输入和输出均支持堆内和堆外缓冲，输出缓冲剩余空间需不小于 {@link Cipher#getOutputSize(int)}
+     *
+     * @param data    被解密的数据缓冲
+     * @param out     输出缓冲
+     * @param keyType 私钥或公钥 {@link KeyType}
+     * @return 写入输出缓冲的字节数
+     */
+    public int decrypt(ByteBuffer data, ByteBuffer out, KeyType keyType) {
+        ObjectPool<Cipher> pool = getCipherPool(Cipher.DECRYPT_MODE, keyType);
+        Cipher engine = pool.acquire();
+        try {
+            int result = engine.doFinal(data, out);
+            pool.release(engine);
+            return result;
+        } catch (Exception e) {
+            throw new CryptoException(e);
+        }
+    }
+
     // --------------------------------------------------------------------------------- Getters and Setters
 
     /**
@@ -300,6 +613,7 @@ public class AsymmetricCriptor {
      */
     public AsymmetricCriptor setPublicKey(PublicKey publicKey) {
         this.publicKey = publicKey;
+        resetPools();
         return this;
     }
 
@@ -329,11 +643,13 @@ public class AsymmetricCriptor {
      */
     public AsymmetricCriptor setPrivateKey(PrivateKey privateKey) {
         this.privateKey = privateKey;
+        resetPools();
         return this;
     }
 
     /**
-     * 获得签名对象
+     * 获得签名对象<br>
+     * 返回的是用于创建签名引擎的原型，不应直接用于签名或验证
      *
      * @return {@link Signature}
      */
@@ -342,23 +658,61 @@ public class AsymmetricCriptor {
     }
 
     /**
-     * 设置签名
+     * 设置签名<br>
+     * 之后的签名和验证使用与此对象算法、Provider相同的新引擎，此对象本身不会被直接使用
      *
      * @param signature 签名对象 {@link Signature}
      * @return 自身 {@link AsymmetricCriptor}
      */
     public AsymmetricCriptor setSignature(Signature signature) {
         this.signature = signature;
+        resetPools();
         return this;
     }
 
     /**
-     * 获得加密或解密器
+     * 设置签名算法，之后的签名和验证使用该算法
+     *
+     * @param signAlgorithm {@link SignAlgorithm} 签名算法
+     * @return 自身 {@link AsymmetricCriptor}
+     */
+    public AsymmetricCriptor setSignAlgorithm(SignAlgorithm signAlgorithm) {
+        return setSignature(SecurityUtils.generateSignature(signAlgorithm));
+    }
+
+    /**
+     * 获得加密或解密器<br>
+     * 返回的是用于创建加解密引擎的原型，不应直接用于加密或解密
      *
      * @return 加密或解密
      */
     public Cipher getClipher() {
-        return clipher;
+        Cipher prototype = this.clipher;
+        if (null == prototype) {
+            try {
+                prototype = ProviderRegistry.getCipher(this.algorithm);
+            } catch (Exception e) {
+                throw new CryptoException(e);
+            }
+            this.clipher = prototype;
+        }
+        return prototype;
+    }
+
+    /**
+     * 获得指定模式和密钥类型的 {@link Cipher} 池，借出的引擎已完成初始化，可直接调用 doFinal<br>
+     * 使用完毕后归还到同一个池；处理失败的引擎不应归还
+     *
+     * @param mode    模式，{@link Cipher#ENCRYPT_MODE} 或 {@link Cipher#DECRYPT_MODE}
+     * @param keyType 私钥或公钥 {@link KeyType}
+     * @return {@link Cipher} 池
+     */
+    protected ObjectPool<Cipher> getCipherPool(int mode, KeyType keyType) {
+        boolean encrypt = Cipher.ENCRYPT_MODE == mode;
+        if (KeyType.PrivateKey == keyType) {
+            return encrypt ? privateEncryptPool : privateDecryptPool;
+        }
+        return encrypt ? publicEncryptPool : publicDecryptPool;
     }
 
     /**
@@ -375,7 +729,7 @@ public class AsymmetricCriptor {
                 }
                 return this.privateKey;
             case PublicKey:
-                if (null == this.privateKey) {
+                if (null == this.publicKey) {
                     throw new NullPointerException("Public key must not null when use it !");
                 }
                 return this.publicKey;
@@ -383,6 +737,215 @@ public class AsymmetricCriptor {
         throw new CryptoException("Uknown key type: " + type);
     }
 
+    /**
+     * 重建所有引擎池，之前借出的引擎使用完毕后归还到旧池，随旧池一起丢弃
+     */
+    private void resetPools() {
+        this.signPool = new ObjectPool<Signature>() {
+            @Override
+            protected Signature create() {
+                return initSignature(signature, algorithm, getKeyByType(KeyType.PrivateKey));
+            }
+        };
+        this.verifyPool = new ObjectPool<Signature>() {
+            @Override
+            protected Signature create() {
+                return initSignature(signature, algorithm, getKeyByType(KeyType.PublicKey));
+            }
+        };
+        this.privateEncryptPool = newCipherPool(Cipher.ENCRYPT_MODE, KeyType.PrivateKey);
+        this.publicEncryptPool = newCipherPool(Cipher.ENCRYPT_MODE, KeyType.PublicKey);
+        this.privateDecryptPool = newCipherPool(Cipher.DECRYPT_MODE, KeyType.PrivateKey);
+        this.publicDecryptPool = newCipherPool(Cipher.DECRYPT_MODE, KeyType.PublicKey);
+    }
+
+    private ObjectPool<Cipher> newCipherPool(final int mode, final KeyType keyType) {
+        return new ObjectPool<Cipher>() {
+            @Override
+            protected Cipher create() {
+                Cipher prototype = getClipher();
+                try {
+                    Cipher engine = ProviderRegistry.getCipher(prototype.getAlgorithm());
+                    engine.init(mode, getKeyByType(keyType));
+                    return engine;
+                } catch (GeneralSecurityException e) {
+                    throw new CryptoException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * 从签名原型克隆一个新的签名对象，不支持克隆时从原型的Provider中重新获取，并复制RSASSA-PSS的签名参数
+     *
+     * @param prototype 签名原型
+     * @param algorithm 非对称算法，用于原型为<code>null</code>时的异常信息
+     * @return {@link Signature}
+     */
+    static Signature newSignature(Signature prototype, String algorithm) {
+        if (null == prototype) {
+            throw new CryptoException("Signature not supported by algorithm: " + algorithm);
+        }
+        try {
+            return (Signature) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            try {
+                Signature engine = Signature.getInstance(prototype.getAlgorithm(), prototype.getProvider());
+                copyParameters(prototype, engine);
+                return engine;
+            } catch (GeneralSecurityException ex) {
+                throw new CryptoException(ex);
+            }
+        }
+    }
+
+    /**
+     * 从签名原型创建签名对象并按密钥初始化，私钥初始化为签名，公钥初始化为验证<br>
+     * 原型的Provider不接受该密钥时（例如PKCS11等硬件密钥），改用不固定Provider的新签名对象，由JCA按密钥类型选择Provider
+     *
+     * @param prototype 签名原型
+     * @param algorithm 非对称算法，用于原型为<code>null</code>时的异常信息
+     * @param key       {@link PrivateKey} 或 {@link PublicKey}
+     * @return 已初始化的 {@link Signature}
+     */
+    static Signature initSignature(Signature prototype, String algorithm, Key key) {
+        Signature engine = newSignature(prototype, algorithm);
+        try {
+            initSignature(engine, key);
+            return engine;
+        } catch (InvalidKeyException e) {
+            try {
+                engine = ProviderRegistry.getSignature(prototype.getAlgorithm());
+                copyParameters(prototype, engine);
+                initSignature(engine, key);
+                return engine;
+            } catch (GeneralSecurityException ex) {
+                throw new CryptoException(ex);
+            }
+        }
+    }
+
+    private static void initSignature(Signature engine, Key key) throws InvalidKeyException {
+        if (key instanceof PrivateKey) {
+            engine.initSign((PrivateKey) key);
+        } else {
+            engine.initVerify((PublicKey) key);
+        }
+    }
+
+    /**
+     * 复制RSASSA-PSS等算法的签名参数
+     */
+    private static void copyParameters(Signature prototype, Signature engine) throws GeneralSecurityException {
+        AlgorithmParameters parameters = prototype.getParameters();
+        if (null != parameters) {
+            engine.setParameter(parameters.getParameterSpec(PSSParameterSpec.class));
+        }
+    }
+
+    /**
+     * 获得算法对应的 {@link KeyAgreement} 算法
+     */
+    private static String getKeyAgreementAlgorithm(String algorithm) {
+        return "EC".equalsIgnoreCase(algorithm) ? "ECDH" : algorithm;
+    }
+
+    /**
+     * 借用签名引擎，送入数据后生成签名
+     */
+    private byte[] sign(SignatureInput input) {
+        ObjectPool<Signature> pool = this.signPool;
+        Signature engine = pool.acquire();
+        try {
+            input.feed(engine);
+            byte[] result = engine.sign();
+            pool.release(engine);
+            return result;
+        } catch (IOException | GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 借用验证引擎，送入数据后验证签名
+     */
+    private boolean verify(SignatureInput input, byte[] sign) {
+        ObjectPool<Signature> pool = this.verifyPool;
+        Signature engine = pool.acquire();
+        try {
+            input.feed(engine);
+            boolean result = engine.verify(sign);
+            pool.release(engine);
+            return result;
+        } catch (IOException | GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 使用线程内复用的读缓冲按块读取流并送入签名对象
+     */
+    private static void update(Signature engine, InputStream data) throws IOException, SignatureException {
+        byte[] buffer = IoUtils.acquireBuffer();
+        try {
+            for (int read; (read = data.read(buffer)) != -1; ) {
+                engine.update(buffer, 0, read);
+            }
+        } finally {
+            IoUtils.releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * 读取文件并送入签名对象，较大的文件使用内存映射
+     */
+    private static void update(Signature engine, File file) throws IOException {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            IoUtils.read(channel, 0, channel.size(), newHandler(engine));
+        } finally {
+            IoUtils.closeQuietly(channel);
+        }
+    }
+
+    private static ByteBufferHandler newHandler(final Signature engine) {
+        return new ByteBufferHandler() {
+            @Override
+            public void handle(ByteBuffer buffer) {
+                try {
+                    engine.update(buffer);
+                } catch (SignatureException e) {
+                    throw new CryptoException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * 签名或验证的数据来源
+     */
+    private static abstract class SignatureInput {
+        /**
+         * 将全部数据送入已初始化的签名对象
+         */
+        abstract void feed(Signature engine) throws IOException, SignatureException;
+    }
+
+    /**
+     * 处理 {@link ByteBuffer} 中的剩余数据，返回结果bytes
+     *
+     * @param cipher 已初始化的 {@link Cipher}
+     * @param data   数据缓冲
+     * @return 结果bytes
+     * @throws GeneralSecurityException 加解密失败
+     */
+    private static byte[] doFinal(Cipher cipher, ByteBuffer data) throws GeneralSecurityException {
+        byte[] result = new byte[cipher.getOutputSize(data.remaining())];
+        int size = cipher.doFinal(data, ByteBuffer.wrap(result));
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
     /**
      * 从流中读取bytes
      *
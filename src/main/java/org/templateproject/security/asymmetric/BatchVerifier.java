@@ -0,0 +1,299 @@
+package org.templateproject.security.asymmetric;
+
+import org.templateproject.security.SecurityUtils;
+import org.templateproject.security.exception.CryptoException;
+import org.templateproject.security.zsupport.ForkJoinPools;
+import org.templateproject.security.zsupport.ObjectPool;
+import org.templateproject.security.zsupport.ProviderRegistry;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 批量签名验证<br>
+ * 收集一批（公钥、数据、签名），在 {@link ForkJoinPool} 中并行验证，结果以 {@link BitSet} 返回，第i位表示第i个签名是否验证通过。
+ * 每个公钥对应一个已完成 initVerify 的 {@link Signature} 池，同一公钥的签名不再重复初始化，池在多批之间复用，
+ * 缓存的公钥超过最大数量时淘汰最久未使用的池。<br>
+ * 单个签名验证过程中的任何异常（签名格式错误、公钥无效等）都只使该签名验证失败，不抛出异常，也不影响同批其他签名。<br>
+ * 添加和验证须在同一线程中进行；验证过程本身在线程池中并行。
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class BatchVerifier {
+
+    /**
+     * 每个并行任务至少验证的签名数，用于摊薄任务拆分的开销
+     */
+    private static final int BATCH_SIZE = 16;
+    /**
+     * 默认最多缓存引擎池的公钥数量
+     */
+    public static final int DEFAULT_MAX_KEYS = 1024;
+
+    private final Signature prototype;
+    private final PublicKey defaultKey;
+    /**
+     * 按公钥缓存的引擎池，按访问顺序淘汰，访问时需对其加锁
+     */
+    private final LinkedHashMap<PublicKey, ObjectPool<Signature>> pools;
+
+    private final List<PublicKey> keys = new ArrayList<>();
+    private final List<byte[]> data = new ArrayList<>();
+    private final List<byte[]> signs = new ArrayList<>();
+
+    /**
+     * 构造
+     *
+     * @param algorithm 签名算法，例如 SHA256withRSA、SHA256withECDSA
+     */
+    public BatchVerifier(String algorithm) {
+        this(getSignature(algorithm), null);
+    }
+
+    /**
+     * 构造
+     *
+     * @param signAlgorithm {@link SignAlgorithm} 签名算法
+     */
+    public BatchVerifier(SignAlgorithm signAlgorithm) {
+        this(SecurityUtils.generateSignature(signAlgorithm), null);
+    }
+
+    /**
+     * 构造，使用非对称加密对象的签名算法和公钥
+     *
+     * @param criptor {@link AsymmetricCriptor}
+     */
+    public BatchVerifier(AsymmetricCriptor criptor) {
+        this(criptor.getSignature(), criptor.getPublicKey());
+    }
+
+    /**
+     * 构造
+     *
+     * @param prototype  签名原型，用于确定算法、Provider和参数，此对象本身不会被直接使用
+     * @param defaultKey 默认公钥，可为<code>null</code>
+     */
+    public BatchVerifier(Signature prototype, PublicKey defaultKey) {
+        this(prototype, defaultKey, DEFAULT_MAX_KEYS);
+    }
+
+    /**
+     * 构造
+     *
+     * @param prototype  签名原型，用于确定算法、Provider和参数，此对象本身不会被直接使用
+     * @param defaultKey 默认公钥，可为<code>null</code>
+     * @param maxKeys    最多缓存引擎池的公钥数量，必须大于0
+     */
+    public BatchVerifier(Signature prototype, PublicKey defaultKey, final int maxKeys) {
+        if (maxKeys < 1) {
+            throw new IllegalArgumentException("Max keys must be positive!");
+        }
+        this.prototype = prototype;
+        this.defaultKey = defaultKey;
+        this.pools = new LinkedHashMap<PublicKey, ObjectPool<Signature>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PublicKey, ObjectPool<Signature>> eldest) {
+                return size() > maxKeys;
+            }
+        };
+    }
+
+    /**
+     * 使用默认公钥添加一个待验证的签名
+     *
+     * @param data 数据
+     * @param sign 签名
+     * @return 在本批中的序号
+     */
+    public int add(byte[] data, byte[] sign) {
+        if (null == defaultKey) {
+            throw new NullPointerException("Default public key must not null when use it !");
+        }
+        return add(defaultKey, data, sign);
+    }
+
+    /**
+     * 添加一个待验证的签名
+     *
+     * @param key  公钥
+     * @param data 数据
+     * @param sign 签名
+     * @return 在本批中的序号
+     */
+    public int add(PublicKey key, byte[] data, byte[] sign) {
+        if (null == key) {
+            throw new NullPointerException("Public key must not null!");
+        }
+        this.keys.add(key);
+        this.data.add(data);
+        this.signs.add(sign);
+        return this.keys.size() - 1;
+    }
+
+    /**
+     * 获得本批中待验证的签名数
+     *
+     * @return 签名数
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * 使用共享的默认线程池验证本批签名，见 {@link #verify(ForkJoinPool)}
+     *
+     * @return 验证结果
+     */
+    public BitSet verify() {
+        return verify(null);
+    }
+
+    /**
+     * 并行验证本批所有签名，完成后清空本批，之后可继续添加下一批
+     *
+     * @param forkJoinPool 线程池，<code>null</code>时使用共享的默认线程池
+     * @return 验证结果，第i位为<code>true</code>表示序号为i的签名验证通过
+     */
+    public BitSet verify(ForkJoinPool forkJoinPool) {
+        final int count = keys.size();
+        final boolean[] results = new boolean[count];
+        try {
+            ForkJoinPool pool = null == forkJoinPool ? ForkJoinPools.getDefault() : forkJoinPool;
+            if (count <= BATCH_SIZE || pool.getParallelism() < 2) {
+                // 数量太少或只有单核时并行没有收益，直接在调用线程中验证
+                verifyRange(results, 0, count);
+            } else {
+                pool.invoke(new RangeTask(results, 0, count));
+            }
+        } finally {
+            clear();
+        }
+        BitSet bitSet = new BitSet(count);
+        for (int i = 0; i < count; i++) {
+            if (results[i]) {
+                bitSet.set(i);
+            }
+        }
+        return bitSet;
+    }
+
+    /**
+     * 清空本批待验证的签名，已缓存的引擎池保留
+     */
+    public void clear() {
+        keys.clear();
+        data.clear();
+        signs.clear();
+    }
+
+    /**
+     * 清空已缓存的各公钥引擎池，用于公钥吊销或轮换后释放资源
+     */
+    public void clearEngines() {
+        synchronized (pools) {
+            pools.clear();
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------- Private method start
+
+    /**
+     * 验证序号在 [from, to) 范围内的签名
+     */
+    private void verifyRange(boolean[] results, int from, int to) {
+        for (int i = from; i < to; i++) {
+            try {
+                results[i] = verifyOne(i);
+            } catch (SignatureException | RuntimeException e) {
+                // 签名格式错误、公钥无效（创建引擎时的CryptoException）等均视为验证失败
+                results[i] = false;
+            }
+        }
+    }
+
+    /**
+     * 验证序号为i的签名，异常时引擎状态不确定，不归还
+     */
+    private boolean verifyOne(int i) throws SignatureException {
+        ObjectPool<Signature> pool = getPool(keys.get(i));
+        Signature engine = pool.acquire();
+        engine.update(data.get(i));
+        boolean result = engine.verify(signs.get(i));
+        pool.release(engine);
+        return result;
+    }
+
+    /**
+     * 获得公钥对应的引擎池，首次使用时创建
+     */
+    private ObjectPool<Signature> getPool(final PublicKey key) {
+        synchronized (pools) {
+            ObjectPool<Signature> pool = pools.get(key);
+            if (null == pool) {
+                pool = newPool(key);
+                pools.put(key, pool);
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * 创建公钥对应的引擎池，引擎在首次借用时创建
+     */
+    private ObjectPool<Signature> newPool(final PublicKey key) {
+        return new ObjectPool<Signature>() {
+            @Override
+            protected Signature create() {
+                return AsymmetricCriptor.initSignature(prototype, prototype.getAlgorithm(), key);
+            }
+        };
+    }
+
+    private static Signature getSignature(String algorithm) {
+        try {
+            return ProviderRegistry.getSignature(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 按序号范围二分拆分的并行验证任务
+     */
+    private class RangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final boolean[] results;
+        private final int from;
+        private final int to;
+
+        RangeTask(boolean[] results, int from, int to) {
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SIZE) {
+                verifyRange(results, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(results, from, middle), new RangeTask(results, middle, to));
+        }
+    }
+    // ------------------------------------------------------------------------------------------- Private method end
+}
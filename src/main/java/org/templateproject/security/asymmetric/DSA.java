@@ -28,5 +28,17 @@ public class DSA extends AsymmetricCriptor {
 	public DSA(byte[] privateKey, byte[] publicKey) {
 		super(ALGORITHM_DSA, privateKey, publicKey);
 	}
+
+	/**
+	 * 构造，使用指定的签名算法，例如 {@link SignAlgorithm#SHA256withDSA}<br>
+	 * 私钥和公钥同时为空时生成一对新的私钥和公钥
+	 * 
+	 * @param signAlgorithm 签名算法
+	 * @param privateKey 私钥
+	 * @param publicKey 公钥
+	 */
+	public DSA(SignAlgorithm signAlgorithm, byte[] privateKey, byte[] publicKey) {
+		super(ALGORITHM_DSA, signAlgorithm, privateKey, publicKey);
+	}
 	// ------------------------------------------------------------------ Constructor end
 }
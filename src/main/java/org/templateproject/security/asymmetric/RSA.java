@@ -2,6 +2,7 @@ package org.templateproject.security.asymmetric;
 
 import org.templateproject.security.exception.CryptoException;
 import org.templateproject.security.bcd.BCD;
+import org.templateproject.security.zsupport.ObjectPool;
 
 import javax.crypto.Cipher;
 import java.nio.charset.StandardCharsets;
@@ -36,6 +37,18 @@ public class RSA extends AsymmetricCriptor {
     public RSA(byte[] privateKey, byte[] publicKey) {
         super(ALGORITHM_RSA, privateKey, publicKey);
     }
+
+    /**
+     * 构造，使用指定的签名算法，例如 {@link SignAlgorithm#SHA256withRSA}、{@link SignAlgorithm#RSASSA_PSS_SHA256}<br>
+     * 私钥和公钥同时为空时生成一对新的私钥和公钥
+     *
+     * @param signAlgorithm 签名算法
+     * @param privateKey    私钥
+     * @param publicKey     公钥
+     */
+    public RSA(SignAlgorithm signAlgorithm, byte[] privateKey, byte[] publicKey) {
+        super(ALGORITHM_RSA, signAlgorithm, privateKey, publicKey);
+    }
     // ------------------------------------------------------------------ Constructor end
 
     /**
@@ -51,20 +64,19 @@ public class RSA extends AsymmetricCriptor {
         // 模长
         int keyLength = ((RSAKey) key).getModulus().bitLength() / 8;
         StringBuilder sb = new StringBuilder();
-        lock.lock();
+        ObjectPool<Cipher> pool = getCipherPool(Cipher.ENCRYPT_MODE, keyType);
+        Cipher engine = pool.acquire();
         try {
-            clipher.init(Cipher.ENCRYPT_MODE, key);
             // 加密数据长度 <= 模长-11
             String[] dataArray = this.split(data, keyLength - 11);
             // 如果明文长度大于模长-11则要分组加密
             for (String s : dataArray) {
-                sb.append(BCD.bcdToStr(clipher.doFinal(s.getBytes())));
+                sb.append(BCD.bcdToStr(engine.doFinal(s.getBytes())));
             }
         } catch (Exception e) {
             throw new CryptoException(e);
-        } finally {
-            lock.unlock();
         }
+        pool.release(engine);
         return sb.toString();
     }
 
@@ -80,22 +92,21 @@ public class RSA extends AsymmetricCriptor {
         // 模长
         int keyLength = ((RSAKey) key).getModulus().bitLength() / 8;
         StringBuilder sb = new StringBuilder();
-        lock.lock();
+        ObjectPool<Cipher> pool = getCipherPool(Cipher.DECRYPT_MODE, keyType);
+        Cipher engine = pool.acquire();
         try {
-            clipher.init(Cipher.DECRYPT_MODE, key);
             // 加密数据长度 <= 模长-11
             byte[] bcd = BCD.ascToBcd(data == null ? null : data.getBytes(StandardCharsets.UTF_8));
             // 如果密文长度大于模长则要分组解密
             byte[][] arrays = this.split(bcd, keyLength);
             for (byte[] arr : arrays) {
-                byte[] cipherBytes = clipher.doFinal(arr);
+                byte[] cipherBytes = engine.doFinal(arr);
                 sb.append(new String(cipherBytes, StandardCharsets.UTF_8));
             }
         } catch (Exception e) {
             throw new CryptoException(e);
-        } finally {
-            lock.unlock();
         }
+        pool.release(engine);
         return sb.toString();
     }
 
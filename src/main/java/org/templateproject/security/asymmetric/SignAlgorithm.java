@@ -0,0 +1,94 @@
+package org.templateproject.security.asymmetric;
+
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+
+/**
+ * 签名算法类型<br>
+ * RSASSA-PSS 需要 JDK 11+，Ed25519/Ed448 需要 JDK 15+，或提供这些算法的Provider
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public enum SignAlgorithm {
+	NONEwithRSA("NONEwithRSA"), 
+	MD5withRSA("MD5withRSA"), 
+	SHA1withRSA("SHA1withRSA"), 
+	SHA256withRSA("SHA256withRSA"), 
+	SHA384withRSA("SHA384withRSA"), 
+	SHA512withRSA("SHA512withRSA"), 
+	/** RSASSA-PSS，SHA-256摘要，MGF1(SHA-256)，盐长32字节 */
+	RSASSA_PSS_SHA256("RSASSA-PSS", new PSSParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, 32, 1)), 
+	/** RSASSA-PSS，SHA-384摘要，MGF1(SHA-384)，盐长48字节 */
+	RSASSA_PSS_SHA384("RSASSA-PSS", new PSSParameterSpec("SHA-384", "MGF1", MGF1ParameterSpec.SHA384, 48, 1)), 
+	/** RSASSA-PSS，SHA-512摘要，MGF1(SHA-512)，盐长64字节 */
+	RSASSA_PSS_SHA512("RSASSA-PSS", new PSSParameterSpec("SHA-512", "MGF1", MGF1ParameterSpec.SHA512, 64, 1)), 
+
+	NONEwithDSA("NONEwithDSA"), 
+	SHA1withDSA("SHA1withDSA"), 
+	SHA256withDSA("SHA256withDSA"), 
+
+	NONEwithECDSA("NONEwithECDSA"), 
+	SHA1withECDSA("SHA1withECDSA"), 
+	SHA256withECDSA("SHA256withECDSA"), 
+	SHA384withECDSA("SHA384withECDSA"), 
+	SHA512withECDSA("SHA512withECDSA"), 
+
+	Ed25519("Ed25519"), 
+	Ed448("Ed448");
+
+	private String value;
+	private AlgorithmParameterSpec parameterSpec;
+
+	SignAlgorithm(String value) {
+		this(value, null);
+	}
+
+	SignAlgorithm(String value, AlgorithmParameterSpec parameterSpec) {
+		this.value = value;
+		this.parameterSpec = parameterSpec;
+	}
+
+	/**
+	 * 获得JCA签名算法名称
+	 * 
+	 * @return 算法名称
+	 */
+	public String getValue() {
+		return this.value;
+	}
+
+	/**
+	 * 获得签名参数，只有RSASSA-PSS需要，其他算法为<code>null</code>
+	 * 
+	 * @return 签名参数
+	 */
+	public AlgorithmParameterSpec getParameterSpec() {
+		return this.parameterSpec;
+	}
+
+	/**
+	 * 获得非对称算法的默认签名算法<br>
+	 * RSA为兼容已有签名仍为MD5withRSA，新代码建议显式指定 {@link #SHA256withRSA} 或 {@link #RSASSA_PSS_SHA256}
+	 * 
+	 * @param algorithm 非对称算法
+	 * @return 签名算法，仅用于密钥协商的算法（X25519、X448）返回<code>null</code>
+	 */
+	public static SignAlgorithm getDefault(AsymmetricAlgorithm algorithm) {
+		switch (algorithm) {
+		case RSA:
+			return MD5withRSA;
+		case DSA:
+			return SHA1withDSA;
+		case EC:
+			return SHA256withECDSA;
+		case Ed25519:
+			return Ed25519;
+		case Ed448:
+			return Ed448;
+		default:
+			return null;
+		}
+	}
+}
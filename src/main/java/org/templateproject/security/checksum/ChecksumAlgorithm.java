@@ -0,0 +1,39 @@
+package org.templateproject.security.checksum;
+
+/**
+ * 校验和算法类型<br>
+ * 非密码学算法，速度远高于摘要算法，仅适用于去重、缓存校验、传输错误检测等不存在恶意篡改的场景
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public enum ChecksumAlgorithm {
+	CRC32("CRC32", 4), 
+	/** CRC-32C（Castagnoli），JDK 9+ 使用 java.util.zip.CRC32C，低版本使用纯Java实现 */
+	CRC32C("CRC32C", 4), 
+	ADLER32("Adler32", 4), 
+	XXHASH64("xxHash64", 8), 
+	/** MurmurHash3 x86 32位 */
+	MURMUR3_32("Murmur3_32", 4);
+
+	private String value;
+	private int length;
+
+	private ChecksumAlgorithm(String value, int length) {
+		this.value = value;
+		this.length = length;
+	}
+
+	public String getValue() {
+		return this.value;
+	}
+
+	/**
+	 * 获得校验和的字节长度
+	 * 
+	 * @return 字节长度
+	 */
+	public int getLength() {
+		return this.length;
+	}
+}
@@ -0,0 +1,341 @@
+package org.templateproject.security.checksum;
+
+import org.templateproject.security.HexUtils;
+import org.templateproject.security.exception.CryptoException;
+import org.templateproject.security.zsupport.ByteBufferHandler;
+import org.templateproject.security.zsupport.IoUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * 校验和计算器<br>
+ * 用于去重、缓存校验、传输错误检测等只需防止意外损坏的场景，速度远高于 {@link org.templateproject.security.digest.Digester}，
+ * 但不具备抗碰撞性，不能用于防篡改或签名。<br>
+ * 此对象线程安全，每次计算创建独立的 {@link Checksum}。
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class Checksummer {
+
+    /**
+     * JDK 9+ 自带的 java.util.zip.CRC32C 构造器，低版本为<code>null</code>
+     */
+    private static final Constructor<?> JDK_CRC32C = findJdkCrc32c();
+
+    private final ChecksumAlgorithm algorithm;
+    private final long seed;
+
+    /**
+     * 构造
+     *
+     * @param algorithm 算法
+     */
+    public Checksummer(ChecksumAlgorithm algorithm) {
+        this(algorithm, 0);
+    }
+
+    /**
+     * 构造
+     *
+     * @param algorithm 算法
+     * @param seed      种子，仅对 {@link ChecksumAlgorithm#XXHASH64} 和 {@link ChecksumAlgorithm#MURMUR3_32}（取低32位）有效
+     */
+    public Checksummer(ChecksumAlgorithm algorithm, long seed) {
+        this.algorithm = algorithm;
+        this.seed = seed;
+    }
+
+    /**
+     * 创建新的 {@link Checksum}，可用于自行分段更新，返回的对象非线程安全
+     *
+     * @return {@link Checksum}
+     */
+    public Checksum newChecksum() {
+        switch (algorithm) {
+            case CRC32:
+                return new CRC32();
+            case CRC32C:
+                if (null != JDK_CRC32C) {
+                    try {
+                        return (Checksum) JDK_CRC32C.newInstance();
+                    } catch (ReflectiveOperationException e) {
+                        throw new CryptoException(e);
+                    }
+                }
+                return new PureJavaCrc32C();
+            case ADLER32:
+                return new Adler32();
+            case XXHASH64:
+                return new XxHash64(seed);
+            case MURMUR3_32:
+                return new Murmur3((int) seed);
+            default:
+                throw new CryptoException("Unsupported checksum algorithm: " + algorithm);
+        }
+    }
+
+    public ChecksumAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    // ------------------------------------------------------------------------------------------- Checksum
+
+    /**
+     * 计算校验和
+     *
+     * @param data 数据bytes
+     * @return 校验和，32位算法为无符号值
+     */
+    public long checksum(byte[] data) {
+        return checksum(data, 0, data.length);
+    }
+
+    /**
+     * 计算校验和
+     *
+     * @param data   数据bytes
+     * @param offset 开始位置
+     * @param length 长度
+     * @return 校验和，32位算法为无符号值
+     */
+    public long checksum(byte[] data, int offset, int length) {
+        Checksum checksum = newChecksum();
+        checksum.update(data, offset, length);
+        return checksum.getValue();
+    }
+
+    /**
+     * 计算 {@link ByteBuffer} 中剩余数据的校验和，完成后缓冲的position移动到limit
+     *
+     * @param data 数据缓冲
+     * @return 校验和，32位算法为无符号值
+     */
+    public long checksum(ByteBuffer data) {
+        Checksum checksum = newChecksum();
+        update(checksum, data);
+        return checksum.getValue();
+    }
+
+    /**
+     * 读取流并计算校验和，流不会被关闭
+     *
+     * @param data {@link InputStream}
+     * @return 校验和，32位算法为无符号值
+     */
+    public long checksum(InputStream data) {
+        Checksum checksum = newChecksum();
+        byte[] buffer = IoUtils.acquireBuffer();
+        try {
+            for (int read; (read = data.read(buffer)) != -1; ) {
+                checksum.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        } finally {
+            IoUtils.releaseBuffer(buffer);
+        }
+        return checksum.getValue();
+    }
+
+    /**
+     * 计算文件的校验和，较大的文件使用内存映射读取
+     *
+     * @param file 文件
+     * @return 校验和，32位算法为无符号值
+     */
+    public long checksum(File file) {
+        final Checksum checksum = newChecksum();
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            IoUtils.read(channel, 0, channel.size(), new ByteBufferHandler() {
+                @Override
+                public void handle(ByteBuffer buffer) {
+                    update(checksum, buffer);
+                }
+            });
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        } finally {
+            IoUtils.closeQuietly(channel);
+        }
+        return checksum.getValue();
+    }
+
+    // ------------------------------------------------------------------------------------------- Digest
+
+    /**
+     * 计算校验和，结果按大端序转为 {@link ChecksumAlgorithm#getLength()} 长度的bytes
+     *
+     * @param data 数据bytes
+     * @return 校验和bytes
+     */
+    public byte[] digest(byte[] data) {
+        return toBytes(checksum(data));
+    }
+
+    /**
+     * 计算校验和，并转为16进制字符串
+     *
+     * @param data 数据bytes
+     * @return 校验和
+     */
+    public String digestHex(byte[] data) {
+        return HexUtils.encodeHexStr(digest(data));
+    }
+
+    /**
+     * 计算字符串的校验和
+     *
+     * @param data    数据
+     * @param charset 编码
+     * @return 校验和bytes
+     */
+    public byte[] digest(String data, Charset charset) {
+        return digest(data.getBytes(charset));
+    }
+
+    /**
+     * 计算字符串的校验和，使用UTF-8编码
+     *
+     * @param data 数据
+     * @return 校验和bytes
+     */
+    public byte[] digest(String data) {
+        return digest(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 计算字符串的校验和，并转为16进制字符串
+     *
+     * @param data    数据
+     * @param charset 编码
+     * @return 校验和
+     */
+    public String digestHex(String data, Charset charset) {
+        return HexUtils.encodeHexStr(digest(data, charset));
+    }
+
+    /**
+     * 计算字符串的校验和，使用UTF-8编码，并转为16进制字符串
+     *
+     * @param data 数据
+     * @return 校验和
+     */
+    public String digestHex(String data) {
+        return digestHex(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 计算 {@link ByteBuffer} 中剩余数据的校验和
+     *
+     * @param data 数据缓冲
+     * @return 校验和bytes
+     */
+    public byte[] digest(ByteBuffer data) {
+        return toBytes(checksum(data));
+    }
+
+    /**
+     * 计算 {@link ByteBuffer} 中剩余数据的校验和，并转为16进制字符串
+     *
+     * @param data 数据缓冲
+     * @return 校验和
+     */
+    public String digestHex(ByteBuffer data) {
+        return HexUtils.encodeHexStr(digest(data));
+    }
+
+    /**
+     * 读取流并计算校验和，流不会被关闭
+     *
+     * @param data {@link InputStream}
+     * @return 校验和bytes
+     */
+    public byte[] digest(InputStream data) {
+        return toBytes(checksum(data));
+    }
+
+    /**
+     * 读取流并计算校验和，并转为16进制字符串
+     *
+     * @param data {@link InputStream}
+     * @return 校验和
+     */
+    public String digestHex(InputStream data) {
+        return HexUtils.encodeHexStr(digest(data));
+    }
+
+    /**
+     * 计算文件的校验和
+     *
+     * @param file 文件
+     * @return 校验和bytes
+     */
+    public byte[] digest(File file) {
+        return toBytes(checksum(file));
+    }
+
+    /**
+     * 计算文件的校验和，并转为16进制字符串
+     *
+     * @param file 文件
+     * @return 校验和
+     */
+    public String digestHex(File file) {
+        return HexUtils.encodeHexStr(digest(file));
+    }
+
+    // ------------------------------------------------------------------------------------------- Private method start
+
+    /**
+     * 将缓冲送入校验和，堆内缓冲直接使用底层数组，堆外缓冲分块复制
+     */
+    private static void update(Checksum checksum, ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            checksum.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        byte[] chunk = IoUtils.acquireBuffer();
+        try {
+            while (buffer.hasRemaining()) {
+                int length = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, length);
+                checksum.update(chunk, 0, length);
+            }
+        } finally {
+            IoUtils.releaseBuffer(chunk);
+        }
+    }
+
+    private byte[] toBytes(long value) {
+        byte[] result = new byte[algorithm.getLength()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = (byte) value;
+            value >>>= 8;
+        }
+        return result;
+    }
+
+    private static Constructor<?> findJdkCrc32c() {
+        try {
+            return Class.forName("java.util.zip.CRC32C").getConstructor();
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+    // ------------------------------------------------------------------------------------------- Private method end
+}
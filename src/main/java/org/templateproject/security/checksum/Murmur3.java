@@ -0,0 +1,111 @@
+package org.templateproject.security.checksum;
+
+import java.util.zip.Checksum;
+
+/**
+ * MurmurHash3 x86 32位的纯Java实现，支持分段更新，{@link #getValue()} 返回无符号32位值<br>
+ * 非线程安全，见 https://github.com/aappleby/smhasher
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class Murmur3 implements Checksum {
+
+    private static final int C1 = 0xCC9E2D51;
+    private static final int C2 = 0x1B873593;
+
+    private final int seed;
+    private int hash;
+    private int tail;
+    private int tailSize;
+    private long totalLength;
+
+    public Murmur3() {
+        this(0);
+    }
+
+    /**
+     * 构造
+     *
+     * @param seed 种子
+     */
+    public Murmur3(int seed) {
+        this.seed = seed;
+        reset();
+    }
+
+    @Override
+    public void update(int b) {
+        tail |= (b & 0xFF) << (tailSize << 3);
+        totalLength++;
+        if (++tailSize == 4) {
+            hash = mixHash(hash, tail);
+            tail = 0;
+            tailSize = 0;
+        }
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || off > b.length - len) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        int end = off + len;
+        while (tailSize != 0 && off < end) {
+            update(b[off++]);
+        }
+        totalLength += end - off;
+        int h = hash;
+        for (; off <= end - 4; off += 4) {
+            h = mixHash(h, (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24);
+        }
+        hash = h;
+        for (; off < end; off++) {
+            tail |= (b[off] & 0xFF) << (tailSize++ << 3);
+        }
+    }
+
+    /**
+     * 送入整个数组
+     *
+     * @param b 数据
+     */
+    public void update(byte[] b) {
+        update(b, 0, b.length);
+    }
+
+    @Override
+    public long getValue() {
+        int h = hash;
+        if (tailSize > 0) {
+            h ^= mixK(tail);
+        }
+        h ^= (int) totalLength;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        hash = seed;
+        tail = 0;
+        tailSize = 0;
+        totalLength = 0;
+    }
+
+    private static int mixK(int k) {
+        k *= C1;
+        k = Integer.rotateLeft(k, 15);
+        return k * C2;
+    }
+
+    private static int mixHash(int h, int k) {
+        h ^= mixK(k);
+        h = Integer.rotateLeft(h, 13);
+        return h * 5 + 0xE6546B64;
+    }
+}
@@ -0,0 +1,53 @@
+package org.templateproject.security.checksum;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C（Castagnoli）的纯Java查表实现，仅在运行环境没有 java.util.zip.CRC32C（JDK 9 以下）时使用
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+class PureJavaCrc32C implements Checksum {
+
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0x82F63B78 : crc >>> 1;
+            }
+            TABLE[i] = crc;
+        }
+    }
+
+    private int crc = 0xFFFFFFFF;
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xFF];
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || off > b.length - len) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        int c = crc;
+        for (int end = off + len; off < end; off++) {
+            c = (c >>> 8) ^ TABLE[(c ^ b[off]) & 0xFF];
+        }
+        crc = c;
+    }
+
+    @Override
+    public long getValue() {
+        return ~crc & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+}
@@ -0,0 +1,271 @@
+package org.templateproject.security.digest;
+
+import org.templateproject.security.exception.CryptoException;
+import org.templateproject.security.zsupport.IoUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 基于 {@link AsynchronousFileChannel} 的异步摘要过程<br>
+ * 使用两个缓冲区交替读取：计算当前块摘要的同时发起下一块的读取，读取和摘要重叠进行，整个过程不占用等待IO的线程。<br>
+ * 每个实例只处理一个文件，摘要对象由子类提供且只被当前过程使用，过程以完成、失败或取消结束后通过 {@link #release()} 归还，且只归还一次。
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+abstract class AsyncChannelDigest<A> implements CompletionHandler<Integer, ByteBuffer> {
+
+    private final DigestFuture future = new DigestFuture();
+    private final A attachment;
+    private final CompletionHandler<byte[], ? super A> handler;
+    private AsynchronousFileChannel channel;
+    private ByteBuffer[] buffers;
+    private long position;
+    /**
+     * 读取完成和摘要完成两个事件的汇合计数，后到达者负责处理下一块
+     */
+    private final AtomicInteger gate = new AtomicInteger();
+    private volatile int lastRead;
+    /**
+     * 读取或摘要过程中的第一个异常，由使汇合计数归零的一方处理
+     */
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+    AsyncChannelDigest(A attachment, CompletionHandler<byte[], ? super A> handler) {
+        this.attachment = attachment;
+        this.handler = handler;
+    }
+
+    /**
+     * 将数据块送入摘要对象
+     *
+     * @param buffer 数据块
+     */
+    protected abstract void update(ByteBuffer buffer);
+
+    /**
+     * 完成摘要计算
+     *
+     * @return 摘要bytes
+     */
+    protected abstract byte[] doFinal();
+
+    /**
+     * 归还摘要对象，过程结束后恰好调用一次，此后不会再调用 {@link #update(ByteBuffer)}
+     */
+    protected abstract void release();
+
+    /**
+     * 打开文件并发起第一次读取
+     *
+     * @param path 文件路径
+     * @return 摘要结果的 {@link java.util.concurrent.Future}
+     */
+    DigestFuture start(Path path) {
+        try {
+            channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+            int bufferSize = IoUtils.adaptiveBufferSize(channel.size());
+            buffers = new ByteBuffer[]{ByteBuffer.allocate(bufferSize), ByteBuffer.allocate(bufferSize)};
+            gate.set(1);
+            channel.read(buffers[0], 0, buffers[0], this);
+        } catch (IOException | RuntimeException e) {
+            finish(null, e);
+        }
+        return future;
+    }
+
+    @Override
+    public void completed(Integer read, ByteBuffer buffer) {
+        lastRead = read;
+        if (gate.decrementAndGet() == 0) {
+            process(buffer, read);
+        }
+    }
+
+    @Override
+    public void failed(Throwable exc, ByteBuffer buffer) {
+        error.compareAndSet(null, exc);
+        if (gate.decrementAndGet() == 0) {
+            finish(null, error.get());
+        }
+    }
+
+    /**
+     * 处理已读取的数据块：先发起下一块的预读，再计算当前块摘要；若预读已先完成则在当前线程继续处理<br>
+     * 只有使汇合计数归零的一方会进入此方法，因此摘要对象不会被并发使用
+     */
+    private void process(ByteBuffer buffer, int read) {
+        while (read >= 0) {
+            if (null != error.get()) {
+                finish(null, error.get());
+                return;
+            }
+            if (future.isDone()) {
+                finish(null, null);
+                return;
+            }
+            position += read;
+            ByteBuffer next = buffer == buffers[0] ? buffers[1] : buffers[0];
+            next.clear();
+            gate.set(2);
+            try {
+                channel.read(next, position, next, this);
+            } catch (RuntimeException e) {
+                // 读取未发起，不会再有回调
+                finish(null, e);
+                return;
+            }
+
+            try {
+                buffer.flip();
+                update(buffer);
+            } catch (RuntimeException e) {
+                // 预读仍在进行，关闭通道使其尽快失败，由汇合计数归零的一方结束
+                error.compareAndSet(null, e);
+                IoUtils.closeQuietly(channel);
+            }
+            if (gate.decrementAndGet() != 0) {
+                return;
+            }
+            buffer = next;
+            read = lastRead;
+        }
+        if (null != error.get() || future.isDone()) {
+            finish(null, error.get());
+            return;
+        }
+        byte[] result;
+        try {
+            result = doFinal();
+        } catch (RuntimeException e) {
+            finish(null, e);
+            return;
+        }
+        finish(result, null);
+    }
+
+    /**
+     * 结束过程：关闭通道、归还摘要对象，并设置结果或异常，已取消或已结束时只做清理
+     *
+     * @param result 摘要结果
+     * @param exc    异常，为<code>null</code>表示成功或已取消
+     */
+    private void finish(byte[] result, Throwable exc) {
+        IoUtils.closeQuietly(channel);
+        release();
+        if (null != exc) {
+            CryptoException e = exc instanceof CryptoException ? (CryptoException) exc : new CryptoException(exc);
+            if (future.fail(e) && null != handler) {
+                handler.failed(e, attachment);
+            }
+        } else if (null != result) {
+            if (future.complete(result) && null != handler) {
+                handler.completed(result, attachment);
+            }
+        }
+    }
+
+    /**
+     * 异步摘要的结果，只能以完成、失败或取消中的一种方式结束一次，取消时关闭文件通道
+     */
+    class DigestFuture implements Future<byte[]> {
+
+        private static final int RUNNING = 0;
+        private static final int COMPLETED = 1;
+        private static final int FAILED = 2;
+        private static final int CANCELLED = 3;
+
+        private final AtomicInteger state = new AtomicInteger(RUNNING);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile byte[] result;
+        private volatile Throwable exception;
+
+        /**
+         * 设置结果
+         *
+         * @param result 摘要bytes
+         * @return 是否由本次调用结束，已结束时返回<code>false</code>
+         */
+        boolean complete(byte[] result) {
+            if (!state.compareAndSet(RUNNING, COMPLETED)) {
+                return false;
+            }
+            this.result = result;
+            done.countDown();
+            return true;
+        }
+
+        /**
+         * 设置异常
+         *
+         * @param exception 异常
+         * @return 是否由本次调用结束，已结束时返回<code>false</code>
+         */
+        boolean fail(Throwable exception) {
+            if (!state.compareAndSet(RUNNING, FAILED)) {
+                return false;
+            }
+            this.exception = exception;
+            done.countDown();
+            return true;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!state.compareAndSet(RUNNING, CANCELLED)) {
+                return false;
+            }
+            done.countDown();
+            IoUtils.closeQuietly(channel);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        @Override
+        public boolean isDone() {
+            return state.get() != RUNNING;
+        }
+
+        @Override
+        public byte[] get() throws InterruptedException, ExecutionException {
+            done.await();
+            return report();
+        }
+
+        @Override
+        public byte[] get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!done.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return report();
+        }
+
+        private byte[] report() throws ExecutionException {
+            switch (state.get()) {
+                case COMPLETED:
+                    return result;
+                case FAILED:
+                    throw new ExecutionException(exception);
+                default:
+                    throw new CancellationException();
+            }
+        }
+    }
+}
@@ -12,7 +12,18 @@ public enum DigestAlgorithm {
 	SHA1("SHA-1"), 
 	SHA256("SHA-256"), 
 	SHA384("SHA-384"), 
-	SHA512("SHA-512");
+	SHA512("SHA-512"), 
+
+	/** 以下为新增算法，追加在末尾以保持原有常量的序号不变 */
+	SHA224("SHA-224"), 
+	SHA512_224("SHA-512/224"), 
+	SHA512_256("SHA-512/256"), 
+
+	/** SHA-3系列（JDK 9+） */
+	SHA3_224("SHA3-224"), 
+	SHA3_256("SHA3-256"), 
+	SHA3_384("SHA3-384"), 
+	SHA3_512("SHA3-512");
 
 	private String value;
 
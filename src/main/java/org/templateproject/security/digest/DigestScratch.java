@@ -0,0 +1,35 @@
+package org.templateproject.security.digest;
+
+/**
+ * 线程绑定的摘要结果暂存区，用于将摘要写入调用方缓冲（16进制或堆外缓冲）时避免分配临时数组
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+final class DigestScratch {
+
+    private static final ThreadLocal<byte[]> LOCAL_SCRATCH = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[64];
+        }
+    };
+
+    private DigestScratch() {
+    }
+
+    /**
+     * 获得当前线程的暂存区，长度不小于给定大小
+     *
+     * @param size 最小长度
+     * @return 暂存区
+     */
+    static byte[] get(int size) {
+        byte[] scratch = LOCAL_SCRATCH.get();
+        if (scratch.length < size) {
+            scratch = new byte[size];
+            LOCAL_SCRATCH.set(scratch);
+        }
+        return scratch;
+    }
+}
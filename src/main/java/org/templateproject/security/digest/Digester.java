@@ -2,28 +2,57 @@ package org.templateproject.security.digest;
 
 import org.templateproject.security.exception.CryptoException;
 import org.templateproject.security.HexUtils;
+import org.templateproject.security.zsupport.ByteBufferHandler;
+import org.templateproject.security.zsupport.IoUtils;
+import org.templateproject.security.zsupport.ObjectPool;
+import org.templateproject.security.zsupport.ProviderRegistry;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Future;
 
 /**
  * 摘要算法<br>
- * 注意：此对象实例化后为非线程安全！
+ * 注意：默认模式下此对象实例化后为非线程安全！<br>
+ * 使用 {@link #Digester(DigestAlgorithm, boolean)} 开启并发模式后，每次计算从池中借用由原型克隆出的 {@link MessageDigest}，
+ * 同一实例可被多个线程同时使用。
  *
  * @author Looly
  */
 public class Digester {
 
-    //默认缓存大小
-    private static final int DEFAULT_BUFFER_SIZE = 1024;
-
-    private MessageDigest digest;
+    private volatile MessageDigest digest;
+    /**
+     * 并发模式下的摘要对象池，非并发模式为<code>null</code><br>
+     * 重新初始化时整体替换为新池，已借出的对象归还到其来源的旧池，不会混入新池
+     */
+    private volatile ObjectPool<MessageDigest> pool;
 
     public Digester(DigestAlgorithm algorithm) {
+        this(algorithm, false);
+    }
+
+    /**
+     * 构造
+     *
+     * @param algorithm  算法
+     * @param concurrent 是否开启并发模式，开启后同一实例可被多个线程同时使用
+     */
+    public Digester(DigestAlgorithm algorithm, boolean concurrent) {
         init(algorithm.getValue());
+        if (concurrent) {
+            this.pool = newPool(this.digest);
+        }
     }
 
     /**
@@ -34,14 +63,28 @@ public class Digester {
      * @throws CryptoException Cause by IOException
      */
     public Digester init(String algorithm) {
+        MessageDigest prototype;
         try {
-            digest = MessageDigest.getInstance(algorithm);
+            prototype = ProviderRegistry.getMessageDigest(algorithm);
         } catch (NoSuchAlgorithmException e) {
             throw new CryptoException(e);
         }
+        this.digest = prototype;
+        if (null != pool) {
+            this.pool = newPool(prototype);
+        }
         return this;
     }
 
+    /**
+     * 是否为并发模式
+     *
+     * @return 是否为并发模式
+     */
+    public boolean isConcurrent() {
+        return null != pool;
+    }
+
     // ------------------------------------------------------------------------------------------- Digest
 
     /**
@@ -89,26 +132,30 @@ public class Digester {
 
     /**
      * 生成文件摘要<br>
-     * 使用默认缓存大小
+     * 基于 {@link FileChannel} 读取，较大的文件分段映射到内存后直接交给摘要对象，缓冲大小随文件大小自适应
      *
      * @param file 被摘要文件
      * @return 摘要bytes
      * @throws CryptoException Cause by IOException
      */
     public byte[] digest(File file) {
-        InputStream in = null;
+        final ObjectPool<MessageDigest> pool = this.pool;
+        final MessageDigest messageDigest = acquire(pool);
+        FileChannel channel = null;
         try {
-            in = new BufferedInputStream(new FileInputStream(file));
-            return digest(in);
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            IoUtils.read(channel, 0, channel.size(), new ByteBufferHandler() {
+                @Override
+                public void handle(ByteBuffer buffer) {
+                    messageDigest.update(buffer);
+                }
+            });
+            return messageDigest.digest();
         } catch (IOException e) {
             throw new CryptoException(e);
         } finally {
-            if (in != null) {
-                try {
-                    in.close();
-                } catch (Exception e) {
-                }
-            }
+            IoUtils.closeQuietly(channel);
+            release(pool, messageDigest);
         }
     }
 
@@ -123,6 +170,47 @@ public class Digester {
         return HexUtils.encodeHexStr(digest(file));
     }
 
+    /**
+     * 异步生成文件摘要<br>
+     * 基于 {@link java.nio.channels.AsynchronousFileChannel}，读取与摘要计算交替重叠进行，调用线程不会阻塞在磁盘IO上
+     *
+     * @param path 被摘要文件
+     * @return 摘要bytes的 {@link Future}，IO异常以 {@link CryptoException} 形式包装在 {@link java.util.concurrent.ExecutionException} 中
+     */
+    public Future<byte[]> digestAsync(Path path) {
+        return digestAsync(path, null, null);
+    }
+
+    /**
+     * 异步生成文件摘要，完成或失败时回调 {@link CompletionHandler}
+     *
+     * @param path       被摘要文件
+     * @param attachment 回调时传回的附件
+     * @param handler    回调，可为<code>null</code>
+     * @param <A>        附件类型
+     * @return 摘要bytes的 {@link Future}
+     */
+    public <A> Future<byte[]> digestAsync(Path path, A attachment, CompletionHandler<byte[], ? super A> handler) {
+        final ObjectPool<MessageDigest> pool = this.pool;
+        final MessageDigest messageDigest = null == pool ? cloneDigest() : pool.acquire();
+        return new AsyncChannelDigest<A>(attachment, handler) {
+            @Override
+            protected void update(ByteBuffer buffer) {
+                messageDigest.update(buffer);
+            }
+
+            @Override
+            protected byte[] doFinal() {
+                return messageDigest.digest();
+            }
+
+            @Override
+            protected void release() {
+                Digester.this.release(pool, messageDigest);
+            }
+        }.start(path);
+    }
+
     /**
      * 生成摘要
      *
@@ -130,11 +218,13 @@ public class Digester {
      * @return 摘要bytes
      */
     public byte[] digest(byte[] data) {
+        ObjectPool<MessageDigest> pool = this.pool;
+        MessageDigest messageDigest = acquire(pool);
         byte[] result;
         try {
-            result = digest.digest(data);
+            result = messageDigest.digest(data);
         } finally {
-            digest.reset();
+            release(pool, messageDigest);
         }
         return result;
     }
@@ -150,13 +240,152 @@ public class Digester {
     }
 
     /**
-     * 生成摘要，使用默认缓存大小
+     * 生成 {@link ByteBuffer} 中剩余数据的摘要，支持堆内和堆外缓冲，数据直接交给{@link MessageDigest}而不复制到堆内数组<br>
+     * 完成后缓冲的position移动到limit
+     *
+     * @param data 数据缓冲
+     * @return 摘要bytes
+     */
+    public byte[] digest(ByteBuffer data) {
+        ObjectPool<MessageDigest> pool = this.pool;
+        MessageDigest messageDigest = acquire(pool);
+        try {
+            messageDigest.update(data);
+            return messageDigest.digest();
+        } finally {
+            release(pool, messageDigest);
+        }
+    }
+
+    /**
+     * 生成 {@link ByteBuffer} 中剩余数据的摘要，并转为16进制字符串
+     *
+     * @param data 数据缓冲
+     * @return 摘要
+     */
+    public String digestHex(ByteBuffer data) {
+        return HexUtils.encodeHexStr(digest(data));
+    }
+
+    // ------------------------------------------------------------------------------------------- Digest into buffer
+
+    /**
+     * 生成数据指定部分的摘要，写入给定的字节数组，不产生新的对象
+     *
+     * @param data      数据bytes
+     * @param offset    数据起始位置
+     * @param length    数据长度
+     * @param out       输出的字节数组，剩余空间不少于摘要长度
+     * @param outOffset 输出起始位置
+     * @return 写入的字节数，即摘要长度
+     */
+    public int digest(byte[] data, int offset, int length, byte[] out, int outOffset) {
+        ObjectPool<MessageDigest> pool = this.pool;
+        MessageDigest messageDigest = acquire(pool);
+        try {
+            messageDigest.update(data, offset, length);
+            return finish(messageDigest, out, outOffset, out.length - outOffset);
+        } finally {
+            release(pool, messageDigest);
+        }
+    }
+
+    /**
+     * 生成 {@link ByteBuffer} 中剩余数据的摘要，写入输出缓冲的当前位置<br>
+     * 输入和输出均支持堆内和堆外缓冲，完成后输入缓冲的position移动到limit，输出缓冲的position前进摘要长度
+     *
+     * @param data 数据缓冲
+     * @param out  输出缓冲，剩余空间不少于摘要长度
+     * @return 写入的字节数，即摘要长度
+     */
+    public int digest(ByteBuffer data, ByteBuffer out) {
+        ObjectPool<MessageDigest> pool = this.pool;
+        MessageDigest messageDigest = acquire(pool);
+        try {
+            messageDigest.update(data);
+            if (out.hasArray()) {
+                int size = finish(messageDigest, out.array(), out.arrayOffset() + out.position(), out.remaining());
+                out.position(out.position() + size);
+                return size;
+            }
+            byte[] scratch = DigestScratch.get(messageDigest.getDigestLength());
+            int size = finish(messageDigest, scratch, 0, scratch.length);
+            out.put(scratch, 0, size);
+            return size;
+        } finally {
+            release(pool, messageDigest);
+        }
+    }
+
+    /**
+     * 生成数据指定部分的摘要，并将小写16进制字符写入给定的字符数组，不产生新的对象
+     *
+     * @param data      数据bytes
+     * @param offset    数据起始位置
+     * @param length    数据长度
+     * @param out       输出的字符数组，剩余空间不少于摘要长度的两倍
+     * @param outOffset 输出起始位置
+     * @return 写入的字符数
+     */
+    public int digestHex(byte[] data, int offset, int length, char[] out, int outOffset) {
+        ObjectPool<MessageDigest> pool = this.pool;
+        MessageDigest messageDigest = acquire(pool);
+        try {
+            messageDigest.update(data, offset, length);
+            byte[] scratch = DigestScratch.get(messageDigest.getDigestLength());
+            int size = finish(messageDigest, scratch, 0, scratch.length);
+            return HexUtils.encodeHex(scratch, 0, size, out, outOffset, true);
+        } finally {
+            release(pool, messageDigest);
+        }
+    }
+
+    /**
+     * 生成数据指定部分的摘要，并将小写16进制ASCII字节写入给定的字节数组，不产生新的对象
+     *
+     * @param data      数据bytes
+     * @param offset    数据起始位置
+     * @param length    数据长度
+     * @param out       输出的字节数组，剩余空间不少于摘要长度的两倍
+     * @param outOffset 输出起始位置
+     * @return 写入的字节数
+     */
+    public int digestHex(byte[] data, int offset, int length, byte[] out, int outOffset) {
+        ObjectPool<MessageDigest> pool = this.pool;
+        MessageDigest messageDigest = acquire(pool);
+        try {
+            messageDigest.update(data, offset, length);
+            byte[] scratch = DigestScratch.get(messageDigest.getDigestLength());
+            int size = finish(messageDigest, scratch, 0, scratch.length);
+            return HexUtils.encodeHex(scratch, 0, size, out, outOffset, true);
+        } finally {
+            release(pool, messageDigest);
+        }
+    }
+
+    /**
+     * 开始一个增量摘要会话，会话持有独立的摘要对象，与本对象及其他会话互不影响
+     *
+     * @return {@link DigestSession}
+     */
+    public DigestSession newSession() {
+        return new DigestSession(cloneDigest());
+    }
+
+    /**
+     * 生成摘要，使用线程内复用的默认缓存（{@link IoUtils#MAX_BUFFER_SIZE}）<br>
+     * 流不会被关闭
      *
      * @param data {@link InputStream} 数据流
      * @return 摘要bytes
      */
     public byte[] digest(InputStream data) {
-        return digest(data, DEFAULT_BUFFER_SIZE);
+        byte[] buffer = IoUtils.acquireBuffer();
+        try {
+            return digest(data, buffer);
+        } finally {
+            IoUtils.releaseBuffer(buffer);
+        }
     }
 
     /**
@@ -171,53 +400,177 @@ public class Digester {
     }
 
     /**
-     * 生成摘要
+     * 生成摘要<br>
+     * 流不会被关闭
      *
      * @param data         {@link InputStream} 数据流
-     * @param bufferLength 缓存长度，不足1使用 {@link Digester#DEFAULT_BUFFER_SIZE} 做为默认值
+     * @param bufferLength 缓存长度，不足1时使用默认缓存，见 {@link #digest(InputStream)}
      * @return 摘要bytes
      */
     public byte[] digest(InputStream data, int bufferLength) {
         if (bufferLength < 1) {
-            bufferLength = DEFAULT_BUFFER_SIZE;
+            return digest(data);
         }
-        byte[] buffer = new byte[bufferLength];
+        return digest(data, new byte[bufferLength]);
+    }
 
-        byte[] result = null;
-        try {
-            int read = data.read(buffer, 0, bufferLength);
+    /**
+     * 生成摘要，并转为16进制字符串
+     *
+     * @param data         被摘要数据
+     * @param bufferLength 缓存长度，不足1时使用默认缓存，见 {@link #digest(InputStream)}
+     * @return 摘要
+     */
+    public String digestHex(InputStream data, int bufferLength) {
+        return HexUtils.encodeHexStr(digest(data, bufferLength));
+    }
 
-            while (read > -1) {
-                digest.update(buffer, 0, read);
-                read = data.read(buffer, 0, bufferLength);
-            }
-            digest.digest();
+    /**
+     * 生成通道中剩余数据的摘要<br>
+     * {@link FileChannel} 从当前位置读到末尾，较大的文件使用内存映射；其他通道读入堆外缓冲后直接交给摘要对象。通道需为阻塞模式，不会被关闭
+     *
+     * @param channel {@link ReadableByteChannel}
+     * @return 摘要bytes
+     */
+    public byte[] digest(ReadableByteChannel channel) {
+        final ObjectPool<MessageDigest> pool = this.pool;
+        final MessageDigest messageDigest = acquire(pool);
+        try {
+            IoUtils.read(channel, new ByteBufferHandler() {
+                @Override
+                public void handle(ByteBuffer buffer) {
+                    messageDigest.update(buffer);
+                }
+            });
+            return messageDigest.digest();
         } catch (IOException e) {
             throw new CryptoException(e);
         } finally {
-            digest.reset();
+            release(pool, messageDigest);
         }
-        return result;
     }
 
     /**
-     * 生成摘要，并转为16进制字符串<br>
-     * 使用默认缓存大小
+     * 生成通道中剩余数据的摘要，并转为16进制字符串
      *
-     * @param data         被摘要数据
-     * @param bufferLength 缓存长度，不足1使用 {@link Digester#DEFAULT_BUFFER_SIZE} 做为默认值
+     * @param channel {@link ReadableByteChannel}
      * @return 摘要
      */
-    public String digestHex(InputStream data, int bufferLength) {
-        return HexUtils.encodeHexStr(digest(data, bufferLength));
+    public String digestHex(ReadableByteChannel channel) {
+        return HexUtils.encodeHexStr(digest(channel));
+    }
+
+    /**
+     * 使用给定的缓存读取流并生成摘要
+     *
+     * @param data   {@link InputStream} 数据流
+     * @param buffer 缓存
+     * @return 摘要bytes
+     */
+    private byte[] digest(InputStream data, byte[] buffer) {
+        ObjectPool<MessageDigest> pool = this.pool;
+        MessageDigest messageDigest = acquire(pool);
+        try {
+            for (int read; (read = data.read(buffer, 0, buffer.length)) > -1; ) {
+                messageDigest.update(buffer, 0, read);
+            }
+            return messageDigest.digest();
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        } finally {
+            release(pool, messageDigest);
+        }
     }
 
     /**
-     * 获得 {@link MessageDigest}
+     * 获得 {@link MessageDigest}<br>
+     * 并发模式下返回的是用于克隆的原型对象，不应直接用于计算摘要
      *
      * @return {@link MessageDigest}
      */
     public MessageDigest getDigest() {
         return digest;
     }
+
+    /**
+     * 借用一个摘要对象，非并发模式直接返回自身持有的对象
+     *
+     * @param pool 调用方读取的对象池，非并发模式为<code>null</code>
+     * @return {@link MessageDigest}
+     */
+    private MessageDigest acquire(ObjectPool<MessageDigest> pool) {
+        return null == pool ? digest : pool.acquire();
+    }
+
+    /**
+     * 重置并归还摘要对象到借出它的池
+     *
+     * @param pool          借出时使用的对象池，非并发模式为<code>null</code>
+     * @param messageDigest {@link MessageDigest}
+     */
+    private void release(ObjectPool<MessageDigest> pool, MessageDigest messageDigest) {
+        messageDigest.reset();
+        if (null != pool) {
+            pool.release(messageDigest);
+        }
+    }
+
+    /**
+     * 从当前原型克隆一个新的摘要对象
+     *
+     * @return {@link MessageDigest}
+     */
+    private MessageDigest cloneDigest() {
+        return cloneDigest(this.digest);
+    }
+
+    /**
+     * 创建从指定原型克隆摘要对象的池
+     *
+     * @param prototype 原型
+     * @return {@link ObjectPool}
+     */
+    private static ObjectPool<MessageDigest> newPool(final MessageDigest prototype) {
+        return new ObjectPool<MessageDigest>() {
+            @Override
+            protected MessageDigest create() {
+                return cloneDigest(prototype);
+            }
+        };
+    }
+
+    /**
+     * 从指定原型克隆一个新的摘要对象，不支持克隆时从原型的Provider中重新获取
+     *
+     * @param prototype 原型
+     * @return {@link MessageDigest}
+     */
+    private static MessageDigest cloneDigest(MessageDigest prototype) {
+        try {
+            return (MessageDigest) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            try {
+                return MessageDigest.getInstance(prototype.getAlgorithm(), prototype.getProvider());
+            } catch (NoSuchAlgorithmException ex) {
+                throw new CryptoException(ex);
+            }
+        }
+    }
+
+    /**
+     * 完成摘要计算，结果写入给定的字节数组
+     *
+     * @param messageDigest {@link MessageDigest}
+     * @param out           输出的字节数组
+     * @param outOffset     输出起始位置
+     * @param maxLength     可写入的最大长度
+     * @return 摘要长度
+     */
+    private static int finish(MessageDigest messageDigest, byte[] out, int outOffset, int maxLength) {
+        try {
+            return messageDigest.digest(out, outOffset, maxLength);
+        } catch (DigestException e) {
+            throw new CryptoException(e);
+        }
+    }
 }
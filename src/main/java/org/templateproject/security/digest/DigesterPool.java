@@ -0,0 +1,48 @@
+package org.templateproject.security.digest;
+
+/**
+ * 线程绑定的摘要器池<br>
+ * 每个线程对每种摘要算法只持有一个 {@link Digester}，首次使用时创建，之后重复使用，
+ * 避免每次计算摘要都经过 {@link java.security.MessageDigest#getInstance(String)} 的Provider查找。<br>
+ * 注意：取得的 {@link Digester} 只能在当前线程中即取即用，不可跨线程传递或长期持有，也不可在摘要计算过程中重入使用。
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public final class DigesterPool {
+
+    private static final DigestAlgorithm[] ALGORITHMS = DigestAlgorithm.values();
+
+    private static final ThreadLocal<Digester[]> LOCAL_DIGESTERS = new ThreadLocal<Digester[]>() {
+        @Override
+        protected Digester[] initialValue() {
+            return new Digester[ALGORITHMS.length];
+        }
+    };
+
+    private DigesterPool() {
+    }
+
+    /**
+     * 获得当前线程绑定的摘要器
+     *
+     * @param algorithm 算法
+     * @return {@link Digester}
+     */
+    public static Digester get(DigestAlgorithm algorithm) {
+        Digester[] digesters = LOCAL_DIGESTERS.get();
+        Digester digester = digesters[algorithm.ordinal()];
+        if (null == digester) {
+            digester = new Digester(algorithm);
+            digesters[algorithm.ordinal()] = digester;
+        }
+        return digester;
+    }
+
+    /**
+     * 清除当前线程绑定的所有摘要器，用于线程归还线程池前释放资源
+     */
+    public static void clear() {
+        LOCAL_DIGESTERS.remove();
+    }
+}
@@ -3,13 +3,25 @@ package org.templateproject.security.digest;
 import org.templateproject.security.exception.CryptoException;
 import org.templateproject.security.SecurityUtils;
 import org.templateproject.security.HexUtils;
+import org.templateproject.security.zsupport.ByteBufferHandler;
+import org.templateproject.security.zsupport.IoUtils;
+import org.templateproject.security.zsupport.ObjectPool;
+import org.templateproject.security.zsupport.ProviderRegistry;
 
 import javax.crypto.Mac;
 import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Future;
 
 /**
  * HMAC摘要算法<br>
@@ -17,21 +29,46 @@ import java.nio.charset.StandardCharsets;
  * 主要是利用哈希算法，以一个密钥和一个消息为输入，生成一个消息摘要作为输出。<br>
  * 一般的，消息鉴别码用于验证传输于两个共 同享有一个密钥的单位之间的消息。<br>
  * HMAC 可以与任何迭代散列函数捆绑使用。MD5 和 SHA-1 就是这种散列函数。HMAC 还可以使用一个用于计算和确认消息鉴别值的密钥。<br>
- * 注意：此对象实例化后为非线程安全！
+ * 注意：默认模式下此对象实例化后为非线程安全！<br>
+ * 使用 {@link #HMac(HmacAlgorithm, byte[], boolean)} 开启并发模式后，每次计算从池中借用由原型克隆出的、已完成密钥初始化的 {@link Mac}，
+ * 同一实例可被多个线程同时使用。
  *
  * @author Looly
  */
 public class HMac {
 
-    private Mac mac;
-    private SecretKey secretKey;
+    private volatile Mac mac;
+    private volatile SecretKey secretKey;
+    /**
+     * 并发模式下的Mac对象池，非并发模式为<code>null</code><br>
+     * 重新初始化时整体替换为新池，已借出的对象归还到其来源的旧池，不会混入新池
+     */
+    private volatile ObjectPool<Mac> pool;
+    /**
+     * 是否已锁定密钥，锁定后不能重新初始化，见 {@link #seal()}
+     */
+    private volatile boolean sealed;
 
     public HMac(HmacAlgorithm algorithm) {
         this(algorithm, null);
     }
 
     public HMac(HmacAlgorithm algorithm, byte[] key) {
+        this(algorithm, key, false);
+    }
+
+    /**
+     * 构造
+     *
+     * @param algorithm  算法
+     * @param key        密钥，<code>null</code>时自动生成
+     * @param concurrent 是否开启并发模式，开启后同一实例可被多个线程同时使用
+     */
+    public HMac(HmacAlgorithm algorithm, byte[] key, boolean concurrent) {
         init(algorithm.getValue(), key);
+        if (concurrent) {
+            this.pool = newPool(this.mac, this.secretKey);
+        }
     }
 
     /**
@@ -40,22 +77,42 @@ public class HMac {
      * @param algorithm 算法
      * @return {@link HMac}
      * @throws CryptoException Cause by IOException
+     * @throws IllegalStateException 已锁定密钥（例如由 {@link HMacPool} 取得）时抛出
      */
     public HMac init(String algorithm, byte[] key) {
+        if (sealed) {
+            throw new IllegalStateException("This HMac is shared and can not be re-initialized!");
+        }
+        Mac prototype;
+        SecretKey newKey;
         try {
-            mac = Mac.getInstance(algorithm);
+            prototype = ProviderRegistry.getMac(algorithm);
             if (null != key) {
-                this.secretKey = new SecretKeySpec(key, algorithm);
+                newKey = new SecretKeySpec(key, algorithm);
             } else {
-                this.secretKey = SecurityUtils.generateKey(algorithm);
+                newKey = SecurityUtils.generateKey(algorithm);
             }
-            mac.init(this.secretKey);
+            prototype.init(newKey);
         } catch (Exception e) {
             throw new CryptoException(e);
         }
+        this.mac = prototype;
+        this.secretKey = newKey;
+        if (null != pool) {
+            this.pool = newPool(prototype, newKey);
+        }
         return this;
     }
 
+    /**
+     * 是否为并发模式
+     *
+     * @return 是否为并发模式
+     */
+    public boolean isConcurrent() {
+        return null != pool;
+    }
+
     // ------------------------------------------------------------------------------------------- Digest
 
     /**
@@ -102,25 +159,30 @@ public class HMac {
 
     /**
      * 生成文件摘要<br>
-     * 使用默认缓存大小
+     * 基于 {@link FileChannel} 读取，较大的文件分段映射到内存后直接交给摘要对象，缓冲大小随文件大小自适应
      *
      * @param file 被摘要文件
      * @return 摘要bytes
      * @throws CryptoException Cause by IOException
      */
     public byte[] digest(File file) {
-        InputStream in = null;
+        final ObjectPool<Mac> pool = this.pool;
+        final Mac mac = acquire(pool);
+        FileChannel channel = null;
         try {
-            in = new BufferedInputStream(new FileInputStream(file));
-            return digest(in);
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            IoUtils.read(channel, 0, channel.size(), new ByteBufferHandler() {
+                @Override
+                public void handle(ByteBuffer buffer) {
+                    mac.update(buffer);
+                }
+            });
+            return mac.doFinal();
         } catch (IOException e) {
             throw new CryptoException(e);
         } finally {
-            if (in != null)
-                try {
-                    in.close();
-                } catch (Exception e) {
-                }
+            IoUtils.closeQuietly(channel);
+            release(pool, mac);
         }
     }
 
@@ -135,6 +197,47 @@ public class HMac {
         return HexUtils.encodeHexStr(digest(file));
     }
 
+    /**
+     * 异步生成文件摘要<br>
+     * 基于 {@link java.nio.channels.AsynchronousFileChannel}，读取与摘要计算交替重叠进行，调用线程不会阻塞在磁盘IO上
+     *
+     * @param path 被摘要文件
+     * @return 摘要bytes的 {@link Future}，IO异常以 {@link CryptoException} 形式包装在 {@link java.util.concurrent.ExecutionException} 中
+     */
+    public Future<byte[]> digestAsync(Path path) {
+        return digestAsync(path, null, null);
+    }
+
+    /**
+     * 异步生成文件摘要，完成或失败时回调 {@link CompletionHandler}
+     *
+     * @param path       被摘要文件
+     * @param attachment 回调时传回的附件
+     * @param handler    回调，可为<code>null</code>
+     * @param <A>        附件类型
+     * @return 摘要bytes的 {@link Future}
+     */
+    public <A> Future<byte[]> digestAsync(Path path, A attachment, CompletionHandler<byte[], ? super A> handler) {
+        final ObjectPool<Mac> pool = this.pool;
+        final Mac mac = null == pool ? cloneMac() : pool.acquire();
+        return new AsyncChannelDigest<A>(attachment, handler) {
+            @Override
+            protected void update(ByteBuffer buffer) {
+                mac.update(buffer);
+            }
+
+            @Override
+            protected byte[] doFinal() {
+                return mac.doFinal();
+            }
+
+            @Override
+            protected void release() {
+                HMac.this.release(pool, mac);
+            }
+        }.start(path);
+    }
+
     /**
      * 生成摘要
      *
@@ -142,11 +245,13 @@ public class HMac {
      * @return 摘要bytes
      */
     public byte[] digest(byte[] data) {
+        ObjectPool<Mac> pool = this.pool;
+        Mac mac = acquire(pool);
         byte[] result;
         try {
             result = mac.doFinal(data);
         } finally {
-            mac.reset();
+            release(pool, mac);
         }
         return result;
     }
@@ -162,18 +267,157 @@ public class HMac {
     }
 
     /**
-     * 生成摘要，使用默认缓存大小:1024
+     * 生成 {@link ByteBuffer} 中剩余数据的摘要，支持堆内和堆外缓冲，数据直接交给{@link Mac}而不复制到堆内数组<br>
+     * 完成后缓冲的position移动到limit
+     *
+     * @param data 数据缓冲
+     * @return 摘要bytes
+     */
+    public byte[] digest(ByteBuffer data) {
+        ObjectPool<Mac> pool = this.pool;
+        Mac mac = acquire(pool);
+        try {
+            mac.update(data);
+            return mac.doFinal();
+        } finally {
+            release(pool, mac);
+        }
+    }
+
+    /**
+     * 生成 {@link ByteBuffer} 中剩余数据的摘要，并转为16进制字符串
+     *
+     * @param data 数据缓冲
+     * @return 摘要
+     */
+    public String digestHex(ByteBuffer data) {
+        return HexUtils.encodeHexStr(digest(data));
+    }
+
+    // ------------------------------------------------------------------------------------------- Digest into buffer
+
+    /**
+     * 生成数据指定部分的摘要，写入给定的字节数组，不产生新的对象
+     *
+     * @param data      数据bytes
+     * @param offset    数据起始位置
+     * @param length    数据长度
+     * @param out       输出的字节数组，剩余空间不少于摘要长度
+     * @param outOffset 输出起始位置
+     * @return 写入的字节数，即摘要长度
+     */
+    public int digest(byte[] data, int offset, int length, byte[] out, int outOffset) {
+        ObjectPool<Mac> pool = this.pool;
+        Mac mac = acquire(pool);
+        try {
+            mac.update(data, offset, length);
+            return finish(mac, out, outOffset, out.length - outOffset);
+        } finally {
+            release(pool, mac);
+        }
+    }
+
+    /**
+     * 生成 {@link ByteBuffer} 中剩余数据的摘要，写入输出缓冲的当前位置<br>
+     * 输入和输出均支持堆内和堆外缓冲，完成后输入缓冲的position移动到limit，输出缓冲的position前进摘要长度
+     *
+     * @param data 数据缓冲
+     * @param out  输出缓冲，剩余空间不少于摘要长度
+     * @return 写入的字节数，即摘要长度
+     */
+    public int digest(ByteBuffer data, ByteBuffer out) {
+        ObjectPool<Mac> pool = this.pool;
+        Mac mac = acquire(pool);
+        try {
+            mac.update(data);
+            if (out.hasArray()) {
+                int size = finish(mac, out.array(), out.arrayOffset() + out.position(), out.remaining());
+                out.position(out.position() + size);
+                return size;
+            }
+            byte[] scratch = DigestScratch.get(mac.getMacLength());
+            int size = finish(mac, scratch, 0, scratch.length);
+            out.put(scratch, 0, size);
+            return size;
+        } finally {
+            release(pool, mac);
+        }
+    }
+
+    /**
+     * 生成数据指定部分的摘要，并将小写16进制字符写入给定的字符数组，不产生新的对象
+     *
+     * @param data      数据bytes
+     * @param offset    数据起始位置
+     * @param length    数据长度
+     * @param out       输出的字符数组，剩余空间不少于摘要长度的两倍
+     * @param outOffset 输出起始位置
+     * @return 写入的字符数
+     */
+    public int digestHex(byte[] data, int offset, int length, char[] out, int outOffset) {
+        ObjectPool<Mac> pool = this.pool;
+        Mac mac = acquire(pool);
+        try {
+            mac.update(data, offset, length);
+            byte[] scratch = DigestScratch.get(mac.getMacLength());
+            int size = finish(mac, scratch, 0, scratch.length);
+            return HexUtils.encodeHex(scratch, 0, size, out, outOffset, true);
+        } finally {
+            release(pool, mac);
+        }
+    }
+
+    /**
+     * 生成数据指定部分的摘要，并将小写16进制ASCII字节写入给定的字节数组，不产生新的对象
+     *
+     * @param data      数据bytes
+     * @param offset    数据起始位置
+     * @param length    数据长度
+     * @param out       输出的字节数组，剩余空间不少于摘要长度的两倍
+     * @param outOffset 输出起始位置
+     * @return 写入的字节数
+     */
+    public int digestHex(byte[] data, int offset, int length, byte[] out, int outOffset) {
+        ObjectPool<Mac> pool = this.pool;
+        Mac mac = acquire(pool);
+        try {
+            mac.update(data, offset, length);
+            byte[] scratch = DigestScratch.get(mac.getMacLength());
+            int size = finish(mac, scratch, 0, scratch.length);
+            return HexUtils.encodeHex(scratch, 0, size, out, outOffset, true);
+        } finally {
+            release(pool, mac);
+        }
+    }
+
+    /**
+     * 开始一个增量HMAC会话，会话持有独立的、已使用本对象密钥初始化的Mac对象，与本对象及其他会话互不影响
+     *
+     * @return {@link HMacSession}
+     */
+    public HMacSession newSession() {
+        return new HMacSession(cloneMac());
+    }
+
+    /**
+     * 生成摘要，使用线程内复用的默认缓存（{@link IoUtils#MAX_BUFFER_SIZE}）<br>
+     * 流不会被关闭
      *
      * @param data {@link InputStream} 数据流
      * @return 摘要bytes
      */
     public byte[] digest(InputStream data) {
-        return digest(data, 1024);
+        byte[] buffer = IoUtils.acquireBuffer();
+        try {
+            return digest(data, buffer);
+        } finally {
+            IoUtils.releaseBuffer(buffer);
+        }
     }
 
     /**
      * 生成摘要，并转为16进制字符串<br>
-     * 使用默认缓存大小:1024
+     * 使用默认缓存大小
      *
      * @param data 被摘要数据
      * @return 摘要
@@ -183,53 +427,197 @@ public class HMac {
     }
 
     /**
-     * 生成摘要
+     * 生成摘要<br>
+     * 流不会被关闭
      *
      * @param data         {@link InputStream} 数据流
-     * @param bufferLength 缓存长度，不足1使用 1024 做为默认值
+     * @param bufferLength 缓存长度，不足1时使用默认缓存，见 {@link #digest(InputStream)}
      * @return 摘要bytes
      */
     public byte[] digest(InputStream data, int bufferLength) {
         if (bufferLength < 1) {
-            bufferLength = 1024;
+            return digest(data);
         }
-        byte[] buffer = new byte[bufferLength];
+        return digest(data, new byte[bufferLength]);
+    }
+
+    /**
+     * 生成摘要，并转为16进制字符串
+     *
+     * @param data         被摘要数据
+     * @param bufferLength 缓存长度，不足1时使用默认缓存，见 {@link #digest(InputStream)}
+     * @return 摘要
+     */
+    public String digestHex(InputStream data, int bufferLength) {
+        return HexUtils.encodeHexStr(digest(data, bufferLength));
+    }
 
-        byte[] result = null;
+    /**
+     * 生成通道中剩余数据的摘要<br>
+     * {@link FileChannel} 从当前位置读到末尾，较大的文件使用内存映射；其他通道读入堆外缓冲后直接交给摘要对象。通道需为阻塞模式，不会被关闭
+     *
+     * @param channel {@link ReadableByteChannel}
+     * @return 摘要bytes
+     */
+    public byte[] digest(ReadableByteChannel channel) {
+        final ObjectPool<Mac> pool = this.pool;
+        final Mac mac = acquire(pool);
         try {
-            int read = data.read(buffer, 0, bufferLength);
+            IoUtils.read(channel, new ByteBufferHandler() {
+                @Override
+                public void handle(ByteBuffer buffer) {
+                    mac.update(buffer);
+                }
+            });
+            return mac.doFinal();
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        } finally {
+            release(pool, mac);
+        }
+    }
 
-            while (read > -1) {
+    /**
+     * 生成通道中剩余数据的摘要，并转为16进制字符串
+     *
+     * @param channel {@link ReadableByteChannel}
+     * @return 摘要
+     */
+    public String digestHex(ReadableByteChannel channel) {
+        return HexUtils.encodeHexStr(digest(channel));
+    }
+
+    /**
+     * 使用给定的缓存读取流并生成摘要
+     *
+     * @param data   {@link InputStream} 数据流
+     * @param buffer 缓存
+     * @return 摘要bytes
+     */
+    private byte[] digest(InputStream data, byte[] buffer) {
+        ObjectPool<Mac> pool = this.pool;
+        Mac mac = acquire(pool);
+        try {
+            for (int read; (read = data.read(buffer, 0, buffer.length)) > -1; ) {
                 mac.update(buffer, 0, read);
-                read = data.read(buffer, 0, bufferLength);
             }
-            mac.doFinal();
+            return mac.doFinal();
         } catch (IOException e) {
             throw new CryptoException(e);
         } finally {
-            mac.reset();
+            release(pool, mac);
         }
-        return result;
     }
 
     /**
-     * 生成摘要，并转为16进制字符串<br>
-     * 使用默认缓存大小:1024
+     * 获得 {@link Mac}<br>
+     * 并发模式下返回的是用于克隆的原型对象，不应直接用于计算摘要；已锁定密钥时返回原型的副本
      *
-     * @param data         被摘要数据
-     * @param bufferLength 缓存长度，不足1使用1024 做为默认值
-     * @return 摘要
+     * @return {@link Mac}
      */
-    public String digestHex(InputStream data, int bufferLength) {
-        return HexUtils.encodeHexStr(digest(data, bufferLength));
+    public Mac getMac() {
+        return sealed ? cloneMac() : mac;
     }
 
     /**
-     * 获得 {@link Mac}
+     * 锁定密钥，此后 {@link #init(String, byte[])} 抛出 {@link IllegalStateException}，{@link #getMac()} 不再暴露原型，
+     * 用于 {@link HMacPool} 等由多个调用方共享同一实例的场景
      *
+     * @return this
+     */
+    HMac seal() {
+        this.sealed = true;
+        return this;
+    }
+
+    /**
+     * 借用一个Mac对象，非并发模式直接返回自身持有的对象
+     *
+     * @param pool 调用方读取的对象池，非并发模式为<code>null</code>
      * @return {@link Mac}
      */
-    public Mac getMac() {
-        return mac;
+    private Mac acquire(ObjectPool<Mac> pool) {
+        return null == pool ? this.mac : pool.acquire();
+    }
+
+    /**
+     * 重置并归还Mac对象到借出它的池，重置后保留密钥初始化状态
+     *
+     * @param pool 借出时使用的对象池，非并发模式为<code>null</code>
+     * @param mac  {@link Mac}
+     */
+    private void release(ObjectPool<Mac> pool, Mac mac) {
+        mac.reset();
+        if (null != pool) {
+            pool.release(mac);
+        }
+    }
+
+    /**
+     * 从当前原型克隆一个新的Mac对象
+     *
+     * @return {@link Mac}
+     */
+    private Mac cloneMac() {
+        return cloneMac(this.mac, this.secretKey);
+    }
+
+    /**
+     * 创建从指定原型克隆Mac对象的池
+     *
+     * @param prototype 已完成密钥初始化的原型
+     * @param key       原型使用的密钥
+     * @return {@link ObjectPool}
+     */
+    private static ObjectPool<Mac> newPool(final Mac prototype, final SecretKey key) {
+        return new ObjectPool<Mac>() {
+            @Override
+            protected Mac create() {
+                return cloneMac(prototype, key);
+            }
+        };
+    }
+
+    /**
+     * 从指定原型克隆一个新的Mac对象，不支持克隆时从原型的Provider中重新获取并初始化
+     *
+     * @param prototype 已完成密钥初始化的原型
+     * @param key       原型使用的密钥
+     * @return {@link Mac}
+     */
+    private static Mac cloneMac(Mac prototype, SecretKey key) {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            try {
+                Mac mac = Mac.getInstance(prototype.getAlgorithm(), prototype.getProvider());
+                mac.init(key);
+                return mac;
+            } catch (Exception ex) {
+                throw new CryptoException(ex);
+            }
+        }
+    }
+
+    /**
+     * 完成摘要计算，结果写入给定的字节数组
+     *
+     * @param mac       {@link Mac}
+     * @param out       输出的字节数组
+     * @param outOffset 输出起始位置
+     * @param maxLength 可写入的最大长度
+     * @return 摘要长度
+     */
+    private static int finish(Mac mac, byte[] out, int outOffset, int maxLength) {
+        int size = mac.getMacLength();
+        if (maxLength < size) {
+            throw new CryptoException("Output buffer too short, " + size + " bytes required!");
+        }
+        try {
+            mac.doFinal(out, outOffset);
+        } catch (ShortBufferException e) {
+            throw new CryptoException(e);
+        }
+        return size;
     }
 }
@@ -0,0 +1,261 @@
+package org.templateproject.security.digest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按密钥缓存的HMAC池，用于多租户等每个租户各有一个HMAC密钥的场景<br>
+ * 以（算法、密钥ID）为键保存并发模式的 {@link HMac}，其中的 {@link javax.crypto.Mac} 已完成密钥初始化（ipad/opad已吸收），
+ * 命中时每次计算只需对消息本身做摘要，不再经过 Mac.getInstance 和 Mac.init。<br>
+ * 超过最大数量时淘汰最久未使用的项。此对象线程安全，取得的 {@link HMac} 同样可被多个线程同时使用。<br>
+ * 取得的 {@link HMac} 由同一密钥ID的所有调用方共享，已锁定密钥，不能通过 {@link HMac#init(String, byte[])} 重新初始化。
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class HMacPool {
+
+    /**
+     * 默认最大缓存数量
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final int maxSize;
+    private final KeyLoader keyLoader;
+    private final LinkedHashMap<PoolKey, HMac> cache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public HMacPool() {
+        this(DEFAULT_MAX_SIZE, null);
+    }
+
+    /**
+     * 构造
+     *
+     * @param maxSize   最大缓存数量，必须大于0
+     * @param keyLoader 未命中时按密钥ID加载密钥，为<code>null</code>时只能使用 {@link #get(HmacAlgorithm, String, byte[])}
+     */
+    public HMacPool(final int maxSize, KeyLoader keyLoader) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be positive!");
+        }
+        this.maxSize = maxSize;
+        this.keyLoader = keyLoader;
+        this.cache = new LinkedHashMap<PoolKey, HMac>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PoolKey, HMac> eldest) {
+                if (size() > maxSize) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 获得指定密钥ID的HMAC，未命中时通过 {@link KeyLoader} 加载密钥
+     *
+     * @param algorithm 算法
+     * @param keyId     密钥ID
+     * @return 并发模式、已锁定密钥的 {@link HMac}
+     */
+    public HMac get(HmacAlgorithm algorithm, String keyId) {
+        return get(algorithm, keyId, null);
+    }
+
+    /**
+     * 获得指定密钥ID的HMAC，未命中时使用给定的密钥创建<br>
+     * 命中时不会比较密钥，密钥轮换后需先调用 {@link #invalidate(HmacAlgorithm, String)}
+     *
+     * @param algorithm 算法
+     * @param keyId     密钥ID
+     * @param key       密钥，为<code>null</code>时通过 {@link KeyLoader} 加载
+     * @return 并发模式、已锁定密钥的 {@link HMac}
+     */
+    public HMac get(HmacAlgorithm algorithm, String keyId, byte[] key) {
+        PoolKey poolKey = new PoolKey(algorithm, keyId);
+        HMac hmac;
+        synchronized (cache) {
+            hmac = cache.get(poolKey);
+        }
+        if (null != hmac) {
+            hitCount.incrementAndGet();
+            return hmac;
+        }
+        missCount.incrementAndGet();
+
+        if (null == key) {
+            if (null == keyLoader) {
+                throw new IllegalStateException("No key given and no key loader configured for key id: " + keyId);
+            }
+            key = keyLoader.load(algorithm, keyId);
+            if (null == key) {
+                throw new IllegalArgumentException("No key found for key id: " + keyId);
+            }
+        }
+        HMac created = new HMac(algorithm, key, true).seal();
+        synchronized (cache) {
+            hmac = cache.get(poolKey);
+            if (null == hmac) {
+                cache.put(poolKey, created);
+                hmac = created;
+            }
+        }
+        return hmac;
+    }
+
+    /**
+     * 计算HMAC
+     *
+     * @param algorithm 算法
+     * @param keyId     密钥ID
+     * @param data      数据bytes
+     * @return 摘要bytes
+     */
+    public byte[] digest(HmacAlgorithm algorithm, String keyId, byte[] data) {
+        return get(algorithm, keyId).digest(data);
+    }
+
+    /**
+     * 计算HMAC，并转为16进制字符串
+     *
+     * @param algorithm 算法
+     * @param keyId     密钥ID
+     * @param data      数据bytes
+     * @return 摘要
+     */
+    public String digestHex(HmacAlgorithm algorithm, String keyId, byte[] data) {
+        return get(algorithm, keyId).digestHex(data);
+    }
+
+    /**
+     * 移除指定密钥ID的HMAC，用于密钥轮换或吊销，不计入淘汰数
+     *
+     * @param algorithm 算法
+     * @param keyId     密钥ID
+     * @return 是否存在并已移除
+     */
+    public boolean invalidate(HmacAlgorithm algorithm, String keyId) {
+        synchronized (cache) {
+            return null != cache.remove(new PoolKey(algorithm, keyId));
+        }
+    }
+
+    /**
+     * 清空缓存，不计入淘汰数
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 获得当前缓存数量
+     *
+     * @return 缓存数量
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 获得命中次数
+     *
+     * @return 命中次数
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * 获得未命中（实际创建并初始化Mac）次数
+     *
+     * @return 未命中次数
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 获得因数量超限被淘汰的次数
+     *
+     * @return 淘汰次数
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * 获得命中率，没有访问时为0
+     *
+     * @return 命中率
+     */
+    public double getHitRate() {
+        long hit = hitCount.get();
+        long total = hit + missCount.get();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * 密钥加载器，按密钥ID取得HMAC密钥，例如从配置或密钥管理服务中读取租户密钥
+     */
+    public interface KeyLoader {
+
+        /**
+         * 加载密钥
+         *
+         * @param algorithm 算法
+         * @param keyId     密钥ID
+         * @return 密钥，不存在时返回<code>null</code>
+         */
+        byte[] load(HmacAlgorithm algorithm, String keyId);
+    }
+
+    // ------------------------------------------------------------------------------------------- Private method start
+
+    /**
+     * 缓存键
+     */
+    private static class PoolKey {
+        private final HmacAlgorithm algorithm;
+        private final String keyId;
+
+        PoolKey(HmacAlgorithm algorithm, String keyId) {
+            if (null == keyId) {
+                throw new IllegalArgumentException("Key id must not be null!");
+            }
+            this.algorithm = algorithm;
+            this.keyId = keyId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey other = (PoolKey) o;
+            return algorithm == other.algorithm && keyId.equals(other.keyId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * algorithm.hashCode() + keyId.hashCode();
+        }
+    }
+    // ------------------------------------------------------------------------------------------- Private method end
+}
@@ -0,0 +1,149 @@
+package org.templateproject.security.digest;
+
+import org.templateproject.security.HexUtils;
+import org.templateproject.security.exception.CryptoException;
+
+import javax.crypto.Mac;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 增量HMAC会话，由 {@link HMac#newSession()} 创建<br>
+ * 可多次调用 update 分段送入数据（例如逐块到达的HTTP请求体），最后调用 {@link #finish()} 得到摘要，不必先拼接成一个完整的byte[]。<br>
+ * {@link #snapshot()} 复制当前的中间状态，可在不重新计算已送入数据的情况下得到任意前缀的摘要。<br>
+ * 注意：会话持有独立的、已完成密钥初始化的 {@link Mac}，非线程安全。
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class HMacSession {
+
+    private final Mac mac;
+    private long length;
+
+    HMacSession(Mac mac) {
+        this.mac = mac;
+    }
+
+    /**
+     * 送入数据
+     *
+     * @param data 数据bytes
+     * @return this
+     */
+    public HMacSession update(byte[] data) {
+        return update(data, 0, data.length);
+    }
+
+    /**
+     * 送入数组中的一段数据
+     *
+     * @param data   数据bytes
+     * @param offset 起始位置
+     * @param len    长度
+     * @return this
+     */
+    public HMacSession update(byte[] data, int offset, int len) {
+        mac.update(data, offset, len);
+        length += len;
+        return this;
+    }
+
+    /**
+     * 送入 {@link ByteBuffer} 中的剩余数据，支持堆内和堆外缓冲，完成后缓冲的position移动到limit
+     *
+     * @param data 数据缓冲
+     * @return this
+     */
+    public HMacSession update(ByteBuffer data) {
+        length += data.remaining();
+        mac.update(data);
+        return this;
+    }
+
+    /**
+     * 送入字符串，使用UTF-8编码
+     *
+     * @param data 字符串
+     * @return this
+     */
+    public HMacSession update(String data) {
+        return update(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 送入字符串
+     *
+     * @param data    字符串
+     * @param charset 编码
+     * @return this
+     */
+    public HMacSession update(String data, String charset) {
+        return update(data.getBytes(Charset.forName(charset)));
+    }
+
+    /**
+     * 复制当前的中间状态，得到一个独立的新会话，之后两个会话互不影响
+     *
+     * @return 新的 {@link HMacSession}
+     * @throws CryptoException 算法实现不支持克隆
+     */
+    public HMacSession snapshot() {
+        try {
+            HMacSession session = new HMacSession((Mac) mac.clone());
+            session.length = this.length;
+            return session;
+        } catch (CloneNotSupportedException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 完成摘要计算，之后会话被重置，可重新开始送入数据
+     *
+     * @return 摘要bytes
+     */
+    public byte[] finish() {
+        length = 0;
+        return mac.doFinal();
+    }
+
+    /**
+     * 完成摘要计算，并转为16进制字符串，之后会话被重置
+     *
+     * @return 摘要
+     */
+    public String finishHex() {
+        return HexUtils.encodeHexStr(finish());
+    }
+
+    /**
+     * 放弃已送入的数据，重新开始
+     *
+     * @return this
+     */
+    public HMacSession reset() {
+        mac.reset();
+        length = 0;
+        return this;
+    }
+
+    /**
+     * 获得自上次完成或重置以来送入的字节数
+     *
+     * @return 字节数
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * 获得HMAC算法名称
+     *
+     * @return 算法名称
+     */
+    public String getAlgorithm() {
+        return mac.getAlgorithm();
+    }
+}
@@ -0,0 +1,391 @@
+package org.templateproject.security.digest;
+
+import org.templateproject.security.HexUtils;
+import org.templateproject.security.exception.CryptoException;
+import org.templateproject.security.zsupport.ByteBufferHandler;
+import org.templateproject.security.zsupport.IoUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 多算法单次读取摘要<br>
+ * 数据只读取一遍，同一块数据依次（或在线程池中并行）送入所有已添加的摘要和HMAC算法，一次得到全部结果，
+ * 例如上传文件时同时计算 MD5、SHA-1 和 SHA-256，而不必读三遍文件。<br>
+ * 结果按添加顺序放入以算法名称（例如 MD5、SHA-256、HmacSHA256）为键的 {@link LinkedHashMap}。<br>
+ * 添加算法完成后此对象线程安全，每次计算使用由原型克隆出的独立摘要对象。
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class MultiDigester {
+
+    /**
+     * 并行模式下读取流的缓冲大小：1MB，较大的块可以摊薄线程间交接的开销
+     */
+    private static final int PARALLEL_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * 按添加顺序保存的各算法工厂，每次计算从中创建独立的会话
+     */
+    private final List<SinkFactory> factories = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private ExecutorService executor;
+
+    /**
+     * 构造
+     *
+     * @param algorithms 摘要算法
+     */
+    public MultiDigester(DigestAlgorithm... algorithms) {
+        for (DigestAlgorithm algorithm : algorithms) {
+            addDigest(algorithm);
+        }
+    }
+
+    /**
+     * 添加摘要算法
+     *
+     * @param algorithm 摘要算法
+     * @return this
+     */
+    public MultiDigester addDigest(DigestAlgorithm algorithm) {
+        final Digester digester = new Digester(algorithm);
+        final String name = digester.getDigest().getAlgorithm();
+        addName(name);
+        factories.add(new SinkFactory() {
+            @Override
+            public Sink newSink() {
+                return new DigestSink(name, digester.newSession());
+            }
+        });
+        return this;
+    }
+
+    /**
+     * 添加HMAC算法
+     *
+     * @param algorithm HMAC算法
+     * @param key       密钥
+     * @return this
+     */
+    public MultiDigester addHmac(HmacAlgorithm algorithm, byte[] key) {
+        final HMac hmac = new HMac(algorithm, key);
+        final String name = hmac.getMac().getAlgorithm();
+        addName(name);
+        factories.add(new SinkFactory() {
+            @Override
+            public Sink newSink() {
+                return new HmacSink(name, hmac.newSession());
+            }
+        });
+        return this;
+    }
+
+    /**
+     * 设置线程池，设置后每块数据在多个线程中同时送入各个算法，适用于多核机器上同时计算多种较慢的算法<br>
+     * 调用线程自身也参与计算，并在等待前自己执行线程池中尚未开始的任务，
+     * 因此在该线程池的线程中调用或线程池已满（或已关闭）时不会死锁，只是退化为在调用线程中依次计算。<br>
+     * 线程池为<code>null</code>时在调用线程中依次计算
+     *
+     * @param executor 线程池
+     * @return this
+     */
+    public MultiDigester setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    // ------------------------------------------------------------------------------------------- Digest
+
+    /**
+     * 计算数据的全部摘要
+     *
+     * @param data 数据bytes
+     * @return 以算法名称为键的摘要bytes
+     */
+    public Map<String, byte[]> digest(byte[] data) {
+        List<Sink> sinks = newSinks();
+        update(sinks, ByteBuffer.wrap(data));
+        return finish(sinks);
+    }
+
+    /**
+     * 计算数据的全部摘要，并转为16进制字符串
+     *
+     * @param data 数据bytes
+     * @return 以算法名称为键的摘要
+     */
+    public Map<String, String> digestHex(byte[] data) {
+        return toHex(digest(data));
+    }
+
+    /**
+     * 读取一遍文件并计算全部摘要，较大的文件使用内存映射读取
+     *
+     * @param file 文件
+     * @return 以算法名称为键的摘要bytes
+     */
+    public Map<String, byte[]> digest(File file) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            return digest(channel);
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        } finally {
+            IoUtils.closeQuietly(channel);
+        }
+    }
+
+    /**
+     * 读取一遍文件并计算全部摘要，并转为16进制字符串
+     *
+     * @param file 文件
+     * @return 以算法名称为键的摘要
+     */
+    public Map<String, String> digestHex(File file) {
+        return toHex(digest(file));
+    }
+
+    /**
+     * 读取一遍流并计算全部摘要，流不会被关闭
+     *
+     * @param data {@link InputStream}
+     * @return 以算法名称为键的摘要bytes
+     */
+    public Map<String, byte[]> digest(InputStream data) {
+        List<Sink> sinks = newSinks();
+        byte[] buffer = null == executor ? IoUtils.acquireBuffer() : new byte[PARALLEL_BUFFER_SIZE];
+        try {
+            for (int read; (read = readFully(data, buffer)) > 0; ) {
+                update(sinks, ByteBuffer.wrap(buffer, 0, read));
+            }
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        } finally {
+            IoUtils.releaseBuffer(buffer);
+        }
+        return finish(sinks);
+    }
+
+    /**
+     * 读取一遍流并计算全部摘要，并转为16进制字符串
+     *
+     * @param data {@link InputStream}
+     * @return 以算法名称为键的摘要
+     */
+    public Map<String, String> digestHex(InputStream data) {
+        return toHex(digest(data));
+    }
+
+    /**
+     * 读取一遍通道中的剩余数据并计算全部摘要，通道不会被关闭，见 {@link IoUtils#read(ReadableByteChannel, ByteBufferHandler)}
+     *
+     * @param channel {@link ReadableByteChannel}
+     * @return 以算法名称为键的摘要bytes
+     */
+    public Map<String, byte[]> digest(ReadableByteChannel channel) {
+        final List<Sink> sinks = newSinks();
+        try {
+            IoUtils.read(channel, new ByteBufferHandler() {
+                @Override
+                public void handle(ByteBuffer buffer) {
+                    update(sinks, buffer);
+                }
+            });
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        }
+        return finish(sinks);
+    }
+
+    /**
+     * 读取一遍通道中的剩余数据并计算全部摘要，并转为16进制字符串
+     *
+     * @param channel {@link ReadableByteChannel}
+     * @return 以算法名称为键的摘要
+     */
+    public Map<String, String> digestHex(ReadableByteChannel channel) {
+        return toHex(digest(channel));
+    }
+
+    /**
+     * 获得已添加的算法名称，按添加顺序排列
+     *
+     * @return 算法名称
+     */
+    public List<String> getAlgorithms() {
+        return new ArrayList<>(names);
+    }
+
+    // ------------------------------------------------------------------------------------------- Private method start
+
+    private void addName(String name) {
+        if (names.contains(name)) {
+            throw new IllegalArgumentException("Algorithm already added: " + name);
+        }
+        names.add(name);
+    }
+
+    /**
+     * 按添加顺序创建本次计算使用的摘要对象
+     */
+    private List<Sink> newSinks() {
+        if (names.isEmpty()) {
+            throw new IllegalStateException("No algorithm added!");
+        }
+        List<Sink> sinks = new ArrayList<>(factories.size());
+        for (SinkFactory factory : factories) {
+            sinks.add(factory.newSink());
+        }
+        return sinks;
+    }
+
+    /**
+     * 将一块数据送入所有摘要对象，每个摘要对象使用缓冲的独立副本；并行模式下等待所有算法处理完这块数据后返回
+     */
+    private void update(List<Sink> sinks, final ByteBuffer buffer) {
+        if (null == executor || sinks.size() == 1) {
+            for (Sink sink : sinks) {
+                sink.update(buffer.duplicate());
+            }
+            return;
+        }
+        List<FutureTask<Void>> tasks = new ArrayList<>(sinks.size() - 1);
+        for (int i = 1; i < sinks.size(); i++) {
+            final Sink sink = sinks.get(i);
+            FutureTask<Void> task = new FutureTask<>(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    sink.update(buffer.duplicate());
+                    return null;
+                }
+            });
+            tasks.add(task);
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // 由下面的调用线程执行
+            }
+        }
+        sinks.get(0).update(buffer.duplicate());
+        //线程池尚未开始的任务由调用线程自己执行（已开始或已完成的任务run()直接返回），只等待正在其它线程中执行的任务，
+        //调用线程本身是线程池中的线程时也不会因等待排在自己后面的任务而死锁
+        for (FutureTask<Void> task : tasks) {
+            task.run();
+        }
+        try {
+            for (FutureTask<Void> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CryptoException(e);
+        } catch (ExecutionException e) {
+            throw new CryptoException(e.getCause());
+        }
+    }
+
+    private static Map<String, byte[]> finish(List<Sink> sinks) {
+        Map<String, byte[]> result = new LinkedHashMap<>();
+        for (Sink sink : sinks) {
+            result.put(sink.name, sink.finish());
+        }
+        return result;
+    }
+
+    private static Map<String, String> toHex(Map<String, byte[]> digests) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> entry : digests.entrySet()) {
+            result.put(entry.getKey(), HexUtils.encodeHexStr(entry.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * 读满缓冲，流结束时提前返回
+     */
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        for (int read; total < buffer.length && (read = in.read(buffer, total, buffer.length - total)) != -1; ) {
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * 单个算法的工厂，每次计算创建一个独立的计算过程
+     */
+    private interface SinkFactory {
+        Sink newSink();
+    }
+
+    /**
+     * 单个算法的计算过程
+     */
+    private static abstract class Sink {
+        final String name;
+
+        Sink(String name) {
+            this.name = name;
+        }
+
+        abstract void update(ByteBuffer buffer);
+
+        abstract byte[] finish();
+    }
+
+    private static class DigestSink extends Sink {
+        private final DigestSession session;
+
+        DigestSink(String name, DigestSession session) {
+            super(name);
+            this.session = session;
+        }
+
+        @Override
+        void update(ByteBuffer buffer) {
+            session.update(buffer);
+        }
+
+        @Override
+        byte[] finish() {
+            return session.finish();
+        }
+    }
+
+    private static class HmacSink extends Sink {
+        private final HMacSession session;
+
+        HmacSink(String name, HMacSession session) {
+            super(name);
+            this.session = session;
+        }
+
+        @Override
+        void update(ByteBuffer buffer) {
+            session.update(buffer);
+        }
+
+        @Override
+        byte[] finish() {
+            return session.finish();
+        }
+    }
+    // ------------------------------------------------------------------------------------------- Private method end
+}
@@ -0,0 +1,273 @@
+package org.templateproject.security.digest;
+
+import org.templateproject.security.HexUtils;
+import org.templateproject.security.exception.CryptoException;
+import org.templateproject.security.zsupport.ByteBufferHandler;
+import org.templateproject.security.zsupport.ForkJoinPools;
+import org.templateproject.security.zsupport.IoUtils;
+import org.templateproject.security.zsupport.ObjectPool;
+import org.templateproject.security.zsupport.ProviderRegistry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 分块树形摘要<br>
+ * 将数据按固定大小分块，在 {@link ForkJoinPool} 中并行计算各块的叶子摘要，再合并为根摘要，适用于多核机器上的大文件摘要。<br>
+ * 结果与普通顺序摘要（{@link Digester}）不同，只能与同算法、同分块大小的树形摘要比较。格式如下（H为摘要算法）：
+ * <pre>
+ * 分块数 n = max(1, ceil(总长度 / 分块大小))，空数据视为一个空块
+ * leaf[i] = H(0x00 || chunk[i])
+ * root    = H(0x01 || 分块大小(8字节大端) || 总长度(8字节大端) || leaf[0] || leaf[1] || ... || leaf[n-1])
+ * </pre>
+ * 此对象线程安全。
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class TreeDigester {
+
+    /**
+     * 默认分块大小：8MB
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte ROOT_PREFIX = 0x01;
+
+    private final MessageDigest prototype;
+    private final ObjectPool<MessageDigest> pool;
+    private final int chunkSize;
+    private final ForkJoinPool forkJoinPool;
+
+    public TreeDigester(DigestAlgorithm algorithm) {
+        this(algorithm, DEFAULT_CHUNK_SIZE);
+    }
+
+    public TreeDigester(DigestAlgorithm algorithm, int chunkSize) {
+        this(algorithm, chunkSize, null);
+    }
+
+    /**
+     * 构造
+     *
+     * @param algorithm    算法
+     * @param chunkSize    分块大小，必须大于0
+     * @param forkJoinPool 计算叶子摘要使用的线程池，<code>null</code>时使用共享的默认线程池
+     */
+    public TreeDigester(DigestAlgorithm algorithm, int chunkSize, ForkJoinPool forkJoinPool) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive!");
+        }
+        try {
+            this.prototype = ProviderRegistry.getMessageDigest(algorithm.getValue());
+        } catch (NoSuchAlgorithmException e) {
+            throw new CryptoException(e);
+        }
+        this.pool = new ObjectPool<MessageDigest>() {
+            @Override
+            protected MessageDigest create() {
+                try {
+                    return (MessageDigest) prototype.clone();
+                } catch (CloneNotSupportedException e) {
+                    try {
+                        return MessageDigest.getInstance(prototype.getAlgorithm(), prototype.getProvider());
+                    } catch (NoSuchAlgorithmException ex) {
+                        throw new CryptoException(ex);
+                    }
+                }
+            }
+        };
+        this.chunkSize = chunkSize;
+        this.forkJoinPool = null == forkJoinPool ? ForkJoinPools.getDefault() : forkJoinPool;
+    }
+
+    // ------------------------------------------------------------------------------------------- Digest
+
+    /**
+     * 生成文件的树形摘要
+     *
+     * @param file 被摘要文件
+     * @return 根摘要bytes
+     * @throws CryptoException Cause by IOException
+     */
+    public byte[] digest(File file) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            final FileChannel source = channel;
+            return digest(channel.size(), new ChunkReader() {
+                @Override
+                public void read(long position, int length, final MessageDigest digest) throws IOException {
+                    IoUtils.read(source, position, length, new ByteBufferHandler() {
+                        @Override
+                        public void handle(ByteBuffer buffer) {
+                            digest.update(buffer);
+                        }
+                    });
+                }
+            });
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        } finally {
+            IoUtils.closeQuietly(channel);
+        }
+    }
+
+    /**
+     * 生成文件的树形摘要，并转为16进制字符串
+     *
+     * @param file 被摘要文件
+     * @return 根摘要
+     */
+    public String digestHex(File file) {
+        return HexUtils.encodeHexStr(digest(file));
+    }
+
+    /**
+     * 生成数据的树形摘要
+     *
+     * @param data 数据bytes
+     * @return 根摘要bytes
+     */
+    public byte[] digest(final byte[] data) {
+        try {
+            return digest(data.length, new ChunkReader() {
+                @Override
+                public void read(long position, int length, MessageDigest digest) {
+                    digest.update(data, (int) position, length);
+                }
+            });
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 生成数据的树形摘要，并转为16进制字符串
+     *
+     * @param data 数据bytes
+     * @return 根摘要
+     */
+    public String digestHex(byte[] data) {
+        return HexUtils.encodeHexStr(digest(data));
+    }
+
+    /**
+     * 获得分块大小
+     *
+     * @return 分块大小
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    // ------------------------------------------------------------------------------------------- Private method start
+
+    /**
+     * 并行计算所有叶子摘要并合并为根摘要
+     *
+     * @param length 数据总长度
+     * @param reader 分块读取器
+     * @return 根摘要
+     * @throws IOException IO异常
+     * @throws IllegalArgumentException 叶子摘要总长度超过数组上限时抛出
+     */
+    private byte[] digest(long length, ChunkReader reader) throws IOException {
+        long leafCount = Math.max(1, length / chunkSize + (length % chunkSize == 0 ? 0 : 1));
+        int digestLength = prototype.getDigestLength();
+        long leavesLength = leafCount * digestLength;
+        if (leavesLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many chunks for length " + length + " and chunk size " + chunkSize + ", use a larger chunk size!");
+        }
+        byte[] leaves = new byte[(int) leavesLength];
+        forkJoinPool.invoke(new LeafTask(reader, length, leaves, digestLength, 0, (int) leafCount));
+
+        MessageDigest digest = pool.acquire();
+        try {
+            digest.update(ROOT_PREFIX);
+            digest.update(ByteBuffer.allocate(16).putLong(chunkSize).putLong(length).array());
+            digest.update(leaves);
+            return digest.digest();
+        } finally {
+            digest.reset();
+            pool.release(digest);
+        }
+    }
+
+    /**
+     * 计算一个叶子摘要，写入叶子摘要数组的对应位置
+     */
+    private void digestLeaf(ChunkReader reader, long length, byte[] leaves, int digestLength, int index) throws IOException {
+        long position = (long) index * chunkSize;
+        int chunkLength = (int) Math.min(chunkSize, length - position);
+        MessageDigest digest = pool.acquire();
+        try {
+            digest.update(LEAF_PREFIX);
+            if (chunkLength > 0) {
+                reader.read(position, chunkLength, digest);
+            }
+            digest.digest(leaves, index * digestLength, digestLength);
+        } catch (DigestException e) {
+            throw new CryptoException(e);
+        } finally {
+            digest.reset();
+            pool.release(digest);
+        }
+    }
+
+    /**
+     * 分块读取器，将指定范围的数据送入摘要对象
+     */
+    private interface ChunkReader {
+        void read(long position, int length, MessageDigest digest) throws IOException;
+    }
+
+    /**
+     * 按叶子下标范围二分拆分的并行任务
+     */
+    private class LeafTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ChunkReader reader;
+        private final long length;
+        private final byte[] leaves;
+        private final int digestLength;
+        private final int from;
+        private final int to;
+
+        LeafTask(ChunkReader reader, long length, byte[] leaves, int digestLength, int from, int to) {
+            this.reader = reader;
+            this.length = length;
+            this.leaves = leaves;
+            this.digestLength = digestLength;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                try {
+                    digestLeaf(reader, length, leaves, digestLength, from);
+                } catch (IOException e) {
+                    throw new CryptoException(e);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new LeafTask(reader, length, leaves, digestLength, from, middle),
+                    new LeafTask(reader, length, leaves, digestLength, middle, to));
+        }
+    }
+    // ------------------------------------------------------------------------------------------- Private method end
+}
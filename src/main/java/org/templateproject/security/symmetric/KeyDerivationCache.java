@@ -0,0 +1,305 @@
+package org.templateproject.security.symmetric;
+
+import org.templateproject.security.digest.HMac;
+import org.templateproject.security.digest.HmacAlgorithm;
+import org.templateproject.security.exception.CryptoException;
+import org.templateproject.security.zsupport.ProviderRegistry;
+
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 口令派生密钥缓存<br>
+ * 口令派生（PBE、PBKDF2）刻意设计得很慢，对同一组（算法、口令、盐、迭代次数、密钥长度）重复派生只是浪费CPU。
+ * 此缓存按上述参数保存派生结果，超过最大数量时淘汰最久未使用的项，超过存活时间的项在访问时失效。<br>
+ * 缓存键中只保存口令在每个缓存对象随机密钥下的HmacSHA256指纹，不保存口令本身，也无法离线比对常见口令。
+ * 不带盐的PBE密钥（{@link SecretKey#getEncoded()} 即口令本身）不放入缓存。此对象线程安全，派生过程不持有锁。
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class KeyDerivationCache {
+
+    /**
+     * 默认最大缓存数量
+     */
+    public static final int DEFAULT_MAX_SIZE = 256;
+    /**
+     * 默认存活时间：30分钟
+     */
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<CacheKey, CacheEntry> cache;
+    /**
+     * 计算口令指纹的HMAC，密钥在构造时随机生成且只存在于此对象中
+     */
+    private final HMac fingerprintMac;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public KeyDerivationCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * 构造
+     *
+     * @param maxSize   最大缓存数量，必须大于0
+     * @param ttlMillis 存活时间（毫秒），小于等于0表示永不过期
+     */
+    public KeyDerivationCache(final int maxSize, long ttlMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be positive!");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        byte[] fingerprintKey = new byte[32];
+        new SecureRandom().nextBytes(fingerprintKey);
+        this.fingerprintMac = new HMac(HmacAlgorithm.HmacSHA256, fingerprintKey, true);
+        Arrays.fill(fingerprintKey, (byte) 0);
+        this.cache = new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest) {
+                if (size() > maxSize) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 获得口令派生的密钥，缓存中没有时使用 {@link SecretKeyFactory} 派生并放入缓存<br>
+     * salt为<code>null</code>时派生出的密钥只是口令的编码，每次直接生成，不放入缓存
+     *
+     * @param algorithm  {@link SecretKeyFactory} 算法，例如 PBEWithMD5AndDES、PBKDF2WithHmacSHA256
+     * @param password   口令
+     * @param salt       盐，为<code>null</code>时只以口令生成密钥（PBE算法在 {@link javax.crypto.Cipher#init} 时才使用盐和迭代次数）
+     * @param iterations 迭代次数，salt为<code>null</code>时忽略
+     * @param keyLength  密钥长度（位），salt为<code>null</code>时忽略
+     * @return {@link SecretKey}，每次返回缓存密钥的副本
+     */
+    public SecretKey get(String algorithm, char[] password, byte[] salt, int iterations, int keyLength) {
+        if (null == salt) {
+            return derive(algorithm, password, null, 0, 0);
+        }
+        CacheKey key = new CacheKey(algorithm, fingerprint(password), salt, iterations, keyLength);
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            CacheEntry entry = cache.get(key);
+            if (null != entry) {
+                if (entry.expireAt > now) {
+                    hitCount.incrementAndGet();
+                    return copy(entry.secretKey);
+                }
+                cache.remove(key);
+                evictionCount.incrementAndGet();
+            }
+        }
+        missCount.incrementAndGet();
+
+        SecretKey secretKey = derive(algorithm, password, salt, iterations, keyLength);
+        long expireAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE;
+        synchronized (cache) {
+            cache.put(key, new CacheEntry(secretKey, expireAt));
+        }
+        return copy(secretKey);
+    }
+
+    /**
+     * 移除所有已过期的项
+     *
+     * @return 移除的数量
+     */
+    public int purgeExpired() {
+        long now = System.currentTimeMillis();
+        int count = 0;
+        synchronized (cache) {
+            for (Iterator<CacheEntry> iterator = cache.values().iterator(); iterator.hasNext(); ) {
+                if (iterator.next().expireAt <= now) {
+                    iterator.remove();
+                    count++;
+                }
+            }
+        }
+        evictionCount.addAndGet(count);
+        return count;
+    }
+
+    /**
+     * 清空缓存，不计入淘汰数
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 获得当前缓存数量（可能包含尚未清理的过期项）
+     *
+     * @return 缓存数量
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * 获得命中次数
+     *
+     * @return 命中次数
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * 获得未命中（实际派生）次数
+     *
+     * @return 未命中次数
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 获得因数量超限或过期被淘汰的次数
+     *
+     * @return 淘汰次数
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * 获得命中率，没有访问时为0
+     *
+     * @return 命中率
+     */
+    public double getHitRate() {
+        long hit = hitCount.get();
+        long total = hit + missCount.get();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    // ------------------------------------------------------------------------------------------- Private method start
+
+    private static SecretKey derive(String algorithm, char[] password, byte[] salt, int iterations, int keyLength) {
+        PBEKeySpec keySpec = null == salt ? new PBEKeySpec(password) : new PBEKeySpec(password, salt, iterations, keyLength);
+        try {
+            return ProviderRegistry.getSecretKeyFactory(algorithm).generateSecret(keySpec);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        } finally {
+            keySpec.clearPassword();
+        }
+    }
+
+    /**
+     * 复制缓存中的密钥，调用方销毁或修改返回的密钥不影响缓存
+     */
+    private static SecretKey copy(SecretKey secretKey) {
+        byte[] encoded = secretKey.getEncoded();
+        return null == encoded ? secretKey : new SecretKeySpec(encoded, secretKey.getAlgorithm());
+    }
+
+    /**
+     * 计算口令在此对象随机密钥下的HmacSHA256指纹
+     */
+    private byte[] fingerprint(char[] password) {
+        ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        try {
+            return fingerprintMac.digest(encoded.duplicate());
+        } finally {
+            while (encoded.hasRemaining()) {
+                encoded.put((byte) 0);
+            }
+        }
+    }
+
+    /**
+     * 缓存项
+     */
+    private static class CacheEntry {
+        private final SecretKey secretKey;
+        private final long expireAt;
+
+        CacheEntry(SecretKey secretKey, long expireAt) {
+            this.secretKey = secretKey;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 缓存键
+     */
+    private static class CacheKey {
+        private final String algorithm;
+        private final byte[] fingerprint;
+        private final byte[] salt;
+        private final int iterations;
+        private final int keyLength;
+        private final int hash;
+
+        CacheKey(String algorithm, byte[] fingerprint, byte[] salt, int iterations, int keyLength) {
+            this.algorithm = algorithm;
+            this.fingerprint = fingerprint;
+            this.salt = null == salt ? null : salt.clone();
+            this.iterations = null == salt ? 0 : iterations;
+            this.keyLength = null == salt ? 0 : keyLength;
+            int h = algorithm.hashCode();
+            h = 31 * h + Arrays.hashCode(fingerprint);
+            h = 31 * h + Arrays.hashCode(this.salt);
+            h = 31 * h + this.iterations;
+            this.hash = 31 * h + this.keyLength;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return hash == other.hash && iterations == other.iterations && keyLength == other.keyLength
+                    && algorithm.equals(other.algorithm) && Arrays.equals(fingerprint, other.fingerprint)
+                    && Arrays.equals(salt, other.salt);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+    // ------------------------------------------------------------------------------------------- Private method end
+}
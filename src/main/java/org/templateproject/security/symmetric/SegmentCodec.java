@@ -0,0 +1,359 @@
+package org.templateproject.security.symmetric;
+
+import org.templateproject.security.exception.CryptoException;
+import org.templateproject.security.zsupport.ForkJoinPools;
+import org.templateproject.security.zsupport.ProviderRegistry;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 分段加密格式的编解码，供 {@link SegmentedFileWriter}、{@link SegmentedFileReader} 使用<br>
+ * 格式如下，每段独立加密和认证，可按段随机访问和并行处理：
+ * <pre>
+ * 头部（48字节）：魔数"TPSE"(4) || 版本(1) || 明文分段大小(4字节大端) || 盐(32) || 随机数前缀(7)
+ * 分段密钥：     HKDF-SHA256(密钥, 盐, 魔数 || 版本)，长度与原密钥相同
+ * 分段i：       密文 || 认证标签(16)，除最后一段外明文长度均为分段大小，最后一段可为空
+ * 分段i的随机数：随机数前缀(7) || i(4字节大端) || 是否最后一段(1)
+ * </pre>
+ * 每份数据使用由随机盐派生的独立密钥加密，同一密钥加密大量文件时也不会因随机数前缀碰撞而重用随机数。<br>
+ * 头部作为每段的附加认证数据，最后一段标记防止密文在分段边界被截断。
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+final class SegmentCodec {
+
+    static final int HEADER_LENGTH = 48;
+    static final int TAG_LENGTH = 16;
+
+    private static final byte[] MAGIC = {'T', 'P', 'S', 'E'};
+    private static final byte VERSION = 2;
+    private static final int SALT_OFFSET = 9;
+    private static final int SALT_LENGTH = 32;
+    private static final int NONCE_PREFIX_LENGTH = 7;
+    private static final String HKDF_MAC = "HmacSHA256";
+    private static final byte[] HKDF_INFO = {'T', 'P', 'S', 'E', VERSION};
+    private static final int NONCE_LENGTH = 12;
+    /**
+     * 单个并行任务处理的最小数据量，避免任务过碎
+     */
+    private static final int BATCH_BYTES = 1024 * 1024;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final SymmetricCriptor criptor;
+    private final int segmentSize;
+    private final byte[] header;
+    private final SecretKey segmentKey;
+
+    private SegmentCodec(SymmetricCriptor criptor, int segmentSize, byte[] header) {
+        this.criptor = criptor;
+        this.segmentSize = segmentSize;
+        this.header = header;
+        this.segmentKey = deriveKey(criptor.getSecretKey(), Arrays.copyOfRange(header, SALT_OFFSET, SALT_OFFSET + SALT_LENGTH));
+    }
+
+    /**
+     * 创建使用新随机盐和随机数前缀的编码器，用于加密一份新数据
+     *
+     * @param criptor     认证加密的 {@link SymmetricCriptor}
+     * @param segmentSize 明文分段大小
+     * @return {@link SegmentCodec}
+     */
+    static SegmentCodec create(SymmetricCriptor criptor, int segmentSize) {
+        checkCriptor(criptor);
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("Segment size must be positive!");
+        }
+        byte[] saltAndPrefix = new byte[SALT_LENGTH + NONCE_PREFIX_LENGTH];
+        RANDOM.nextBytes(saltAndPrefix);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.put(MAGIC).put(VERSION).putInt(segmentSize).put(saltAndPrefix);
+        return new SegmentCodec(criptor, segmentSize, header.array());
+    }
+
+    /**
+     * 解析头部，创建用于解密的编码器
+     *
+     * @param criptor 认证加密的 {@link SymmetricCriptor}
+     * @param header  头部bytes
+     * @return {@link SegmentCodec}
+     */
+    static SegmentCodec parse(SymmetricCriptor criptor, byte[] header) {
+        checkCriptor(criptor);
+        if (header.length != HEADER_LENGTH) {
+            throw new CryptoException("Invalid segmented ciphertext header!");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(MAGIC, magic) || buffer.get() != VERSION) {
+            throw new CryptoException("Invalid segmented ciphertext header!");
+        }
+        int segmentSize = buffer.getInt();
+        if (segmentSize < 1) {
+            throw new CryptoException("Invalid segment size: " + segmentSize);
+        }
+        return new SegmentCodec(criptor, segmentSize, header.clone());
+    }
+
+    /**
+     * 判断数据是否以分段格式的魔数开头<br>
+     * 普通认证加密密文以随机数长度（12）开头，不会与魔数混淆
+     *
+     * @param bytes 密文bytes
+     * @return 是否为分段格式
+     */
+    static boolean isSegmented(byte[] bytes) {
+        if (bytes.length < HEADER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void checkCriptor(SymmetricCriptor criptor) {
+        if (!criptor.isAead() || criptor.getIvLength() != NONCE_LENGTH) {
+            throw new IllegalArgumentException("Segmented format requires an AEAD algorithm with 12 bytes nonce, such as AES_GCM or ChaCha20_Poly1305!");
+        }
+    }
+
+    /**
+     * 使用HKDF-SHA256（RFC 5869）从原密钥和盐派生本份数据的分段密钥
+     *
+     * @param key  原密钥
+     * @param salt 盐
+     * @return 分段密钥，长度和算法与原密钥相同
+     */
+    private static SecretKey deriveKey(SecretKey key, byte[] salt) {
+        byte[] ikm = key.getEncoded();
+        if (null == ikm) {
+            throw new CryptoException("Segmented format requires a key with encoded form!");
+        }
+        try {
+            Mac mac = ProviderRegistry.getMac(HKDF_MAC);
+            // Extract
+            mac.init(new SecretKeySpec(salt, HKDF_MAC));
+            byte[] prk = mac.doFinal(ikm);
+            // Expand
+            mac.init(new SecretKeySpec(prk, HKDF_MAC));
+            byte[] okm = new byte[ikm.length];
+            byte[] block = new byte[0];
+            for (int offset = 0, counter = 1; offset < okm.length; offset += block.length, counter++) {
+                mac.update(block);
+                mac.update(HKDF_INFO);
+                mac.update((byte) counter);
+                block = mac.doFinal();
+                System.arraycopy(block, 0, okm, offset, Math.min(block.length, okm.length - offset));
+            }
+            return new SecretKeySpec(okm, key.getAlgorithm());
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    byte[] getHeader() {
+        return header;
+    }
+
+    int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * 每段密文长度（不含最后一段）
+     */
+    int getCipherSegmentSize() {
+        return segmentSize + TAG_LENGTH;
+    }
+
+    /**
+     * 根据明文长度计算分段数，空数据为一个空段
+     */
+    long segmentCount(long plainLength) {
+        return Math.max(1, (plainLength + segmentSize - 1) / segmentSize);
+    }
+
+    /**
+     * 根据明文长度计算包含头部的密文总长度
+     */
+    long cipherLength(long plainLength) {
+        return HEADER_LENGTH + plainLength + segmentCount(plainLength) * TAG_LENGTH;
+    }
+
+    /**
+     * 根据包含头部的密文总长度计算明文长度
+     */
+    long plainLength(long cipherLength) {
+        long body = cipherLength - HEADER_LENGTH;
+        if (body < TAG_LENGTH) {
+            throw new CryptoException("Segmented ciphertext is truncated!");
+        }
+        long segmentCount = (body + getCipherSegmentSize() - 1) / getCipherSegmentSize();
+        if (body - (segmentCount - 1) * getCipherSegmentSize() < TAG_LENGTH) {
+            throw new CryptoException("Segmented ciphertext is truncated!");
+        }
+        return body - segmentCount * TAG_LENGTH;
+    }
+
+    /**
+     * 第index段密文在整个密文中的起始位置
+     */
+    long cipherPosition(long index) {
+        return HEADER_LENGTH + index * getCipherSegmentSize();
+    }
+
+    /**
+     * 加密一段，输入缓冲的剩余数据为该段明文
+     *
+     * @param index 段序号
+     * @param last  是否最后一段
+     * @param in    明文缓冲
+     * @param out   密文缓冲
+     * @return 写入密文缓冲的字节数
+     * @throws GeneralSecurityException 加密失败
+     */
+    int encryptSegment(long index, boolean last, ByteBuffer in, ByteBuffer out) throws GeneralSecurityException {
+        return process(Cipher.ENCRYPT_MODE, index, last, in, out);
+    }
+
+    /**
+     * 解密并校验一段，输入缓冲的剩余数据为该段密文
+     *
+     * @param index 段序号
+     * @param last  是否最后一段
+     * @param in    密文缓冲
+     * @param out   明文缓冲
+     * @return 写入明文缓冲的字节数
+     * @throws GeneralSecurityException 解密或认证失败
+     */
+    int decryptSegment(long index, boolean last, ByteBuffer in, ByteBuffer out) throws GeneralSecurityException {
+        return process(Cipher.DECRYPT_MODE, index, last, in, out);
+    }
+
+    private int process(int mode, long index, boolean last, ByteBuffer in, ByteBuffer out) throws GeneralSecurityException {
+        Cipher engine = criptor.acquireCipher(mode, segmentKey, nonce(index, last));
+        engine.updateAAD(header);
+        int result = engine.doFinal(in, out);
+        criptor.releaseCipher(mode, engine);
+        return result;
+    }
+
+    /**
+     * 生成第index段的随机数
+     */
+    private byte[] nonce(long index, boolean last) {
+        if (index < 0 || index > 0xFFFFFFFFL) {
+            throw new CryptoException("Too many segments: " + index);
+        }
+        ByteBuffer nonce = ByteBuffer.allocate(NONCE_LENGTH);
+        nonce.put(header, HEADER_LENGTH - NONCE_PREFIX_LENGTH, NONCE_PREFIX_LENGTH);
+        nonce.putInt((int) index).put((byte) (last ? 1 : 0));
+        return nonce.array();
+    }
+
+    // ------------------------------------------------------------------------------------------- Channel util
+
+    /**
+     * 从指定位置读满缓冲
+     *
+     * @param channel  {@link FileChannel}
+     * @param buffer   缓冲
+     * @param position 文件位置
+     * @throws IOException IO异常，文件长度不足时抛出 {@link EOFException}
+     */
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file at position " + position);
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * 将缓冲全部写入指定位置
+     *
+     * @param channel  {@link FileChannel}
+     * @param buffer   缓冲
+     * @param position 文件位置
+     * @throws IOException IO异常
+     */
+    static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------- Parallel
+
+    /**
+     * 处理一段连续分段的操作，同一个实例的缓冲可在这些分段间复用
+     */
+    interface SegmentRange {
+        void process(long from, long to) throws IOException, GeneralSecurityException;
+    }
+
+    /**
+     * 在 {@link ForkJoinPool} 中并行处理所有分段
+     *
+     * @param forkJoinPool 线程池，<code>null</code>时使用共享的默认线程池
+     * @param segmentCount 分段数
+     * @param segmentSize  分段大小，用于决定每个任务处理的分段数
+     * @param range        分段操作
+     */
+    static void parallel(ForkJoinPool forkJoinPool, long segmentCount, int segmentSize, SegmentRange range) {
+        long batch = Math.max(1, BATCH_BYTES / segmentSize);
+        (null == forkJoinPool ? ForkJoinPools.getDefault() : forkJoinPool).invoke(new RangeTask(range, batch, 0, segmentCount));
+    }
+
+    /**
+     * 按分段序号范围二分拆分的并行任务
+     */
+    private static class RangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final SegmentRange range;
+        private final long batch;
+        private final long from;
+        private final long to;
+
+        RangeTask(SegmentRange range, long batch, long from, long to) {
+            this.range = range;
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batch) {
+                try {
+                    range.process(from, to);
+                } catch (IOException | GeneralSecurityException e) {
+                    throw new CryptoException(e);
+                }
+                return;
+            }
+            long middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(range, batch, from, middle), new RangeTask(range, batch, middle, to));
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.templateproject.security.symmetric;
+
+import org.templateproject.security.exception.CryptoException;
+import org.templateproject.security.zsupport.IoUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 分段加密文件读取器，读取 {@link SegmentedFileWriter} 生成的密文<br>
+ * 按范围读取时只解密并校验覆盖该范围的分段；整个文件解密时各分段在线程池中并行处理。<br>
+ * 任何分段认证失败、被截断或被重排都会抛出 {@link CryptoException}。此对象线程安全，使用完毕后需关闭。
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class SegmentedFileReader implements Closeable {
+
+    private final FileChannel channel;
+    private final SegmentCodec codec;
+    private final long cipherLength;
+    private final long length;
+    private final long segmentCount;
+    private final ForkJoinPool forkJoinPool;
+
+    public SegmentedFileReader(SymmetricCriptor criptor, File file) {
+        this(criptor, file, null);
+    }
+
+    /**
+     * 构造，打开文件并读取头部
+     *
+     * @param criptor      与写入时相同密钥的 {@link SymmetricCriptor}
+     * @param file         密文文件
+     * @param forkJoinPool 并行解密使用的线程池，<code>null</code>时使用共享的默认线程池
+     */
+    public SegmentedFileReader(SymmetricCriptor criptor, File file, ForkJoinPool forkJoinPool) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(SegmentCodec.HEADER_LENGTH);
+            SegmentCodec.readFully(channel, header, 0);
+            this.codec = SegmentCodec.parse(criptor, header.array());
+            this.cipherLength = channel.size();
+            this.length = codec.plainLength(cipherLength);
+            this.segmentCount = codec.segmentCount(length);
+        } catch (IOException e) {
+            IoUtils.closeQuietly(channel);
+            throw new CryptoException(e);
+        } catch (RuntimeException e) {
+            IoUtils.closeQuietly(channel);
+            throw e;
+        }
+        this.channel = channel;
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * 获得明文长度
+     *
+     * @return 明文长度
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * 从明文的指定位置读取数据
+     *
+     * @param position 明文位置
+     * @param buffer   目标数组
+     * @param offset   目标数组起始位置
+     * @param len      最多读取的字节数
+     * @return 实际读取的字节数，位置已到末尾时返回-1
+     */
+    public int read(long position, byte[] buffer, int offset, int len) {
+        if (position < 0 || offset < 0 || len < 0 || offset + len > buffer.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (position >= length) {
+            return len == 0 ? 0 : -1;
+        }
+        len = (int) Math.min(len, length - position);
+        int segmentSize = codec.getSegmentSize();
+        ByteBuffer cipherBuffer = ByteBuffer.allocate(codec.getCipherSegmentSize());
+        ByteBuffer plain = ByteBuffer.allocate(segmentSize);
+        try {
+            int total = 0;
+            while (total < len) {
+                long index = position / segmentSize;
+                decryptSegment(index, cipherBuffer, plain);
+                int skip = (int) (position - index * segmentSize);
+                int size = Math.min(len - total, plain.remaining() - skip);
+                plain.position(skip);
+                plain.get(buffer, offset + total, size);
+                total += size;
+                position += size;
+            }
+            return total;
+        } catch (IOException | GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 从明文的指定位置读取数据
+     *
+     * @param position 明文位置
+     * @param len      最多读取的字节数
+     * @return 读取的bytes，超出明文末尾的部分被截去
+     */
+    public byte[] read(long position, int len) {
+        if (position < 0 || len < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        byte[] result = new byte[(int) Math.max(0, Math.min(len, length - position))];
+        read(position, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * 顺序解密全部内容并写入输出流，输出流不会被关闭
+     *
+     * @param out 输出流
+     * @return 写入的明文字节数
+     */
+    public long transferTo(OutputStream out) {
+        ByteBuffer cipherBuffer = ByteBuffer.allocate(codec.getCipherSegmentSize());
+        ByteBuffer plain = ByteBuffer.allocate(codec.getSegmentSize());
+        try {
+            for (long index = 0; index < segmentCount; index++) {
+                decryptSegment(index, cipherBuffer, plain);
+                out.write(plain.array(), 0, plain.limit());
+            }
+        } catch (IOException | GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+        return length;
+    }
+
+    /**
+     * 并行解密全部内容到目标文件：各分段在线程池中同时读取、解密并按位置写入
+     *
+     * @param target 明文文件，已存在时覆盖
+     * @return 明文长度
+     */
+    public long decrypt(File target) {
+        FileChannel out = null;
+        try {
+            out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            final FileChannel output = out;
+            final int segmentSize = codec.getSegmentSize();
+            SegmentCodec.parallel(forkJoinPool, segmentCount, segmentSize, new SegmentCodec.SegmentRange() {
+                @Override
+                public void process(long from, long to) throws IOException, GeneralSecurityException {
+                    ByteBuffer cipherBuffer = ByteBuffer.allocate(codec.getCipherSegmentSize());
+                    ByteBuffer plain = ByteBuffer.allocate(segmentSize);
+                    for (long index = from; index < to; index++) {
+                        decryptSegment(index, cipherBuffer, plain);
+                        SegmentCodec.writeFully(output, plain, index * segmentSize);
+                    }
+                }
+            });
+            return length;
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        } finally {
+            IoUtils.closeQuietly(out);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 读取并解密一个分段，完成后明文缓冲处于可读状态
+     *
+     * @param index        分段序号
+     * @param cipherBuffer 密文缓冲，容量为一个密文分段
+     * @param plain        明文缓冲，容量为一个明文分段
+     */
+    private void decryptSegment(long index, ByteBuffer cipherBuffer, ByteBuffer plain) throws IOException, GeneralSecurityException {
+        long position = codec.cipherPosition(index);
+        boolean last = index == segmentCount - 1;
+        cipherBuffer.clear();
+        if (last) {
+            cipherBuffer.limit((int) (cipherLength - position));
+        }
+        SegmentCodec.readFully(channel, cipherBuffer, position);
+        cipherBuffer.flip();
+        plain.clear();
+        codec.decryptSegment(index, last, cipherBuffer, plain);
+        plain.flip();
+    }
+}
@@ -0,0 +1,161 @@
+package org.templateproject.security.symmetric;
+
+import org.templateproject.security.exception.CryptoException;
+import org.templateproject.security.zsupport.IoUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 分段加密文件写入器<br>
+ * 将数据按固定大小分段，每段使用认证加密算法（{@link SymmetricAlgorithm#AES_GCM}、{@link SymmetricAlgorithm#ChaCha20_Poly1305}）独立加密和认证，
+ * 生成的密文可由 {@link SegmentedFileReader} 按任意范围随机解密，而不必解密整个文件。格式见 {@link SegmentCodec}。<br>
+ * 密钥由传入的 {@link SymmetricCriptor} 提供，每次写入生成新的随机数前缀。此对象线程安全。
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class SegmentedFileWriter {
+
+    /**
+     * 默认明文分段大小：64KB
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+    private final SymmetricCriptor criptor;
+    private final int segmentSize;
+    private final ForkJoinPool forkJoinPool;
+
+    public SegmentedFileWriter(SymmetricCriptor criptor) {
+        this(criptor, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public SegmentedFileWriter(SymmetricCriptor criptor, int segmentSize) {
+        this(criptor, segmentSize, null);
+    }
+
+    /**
+     * 构造
+     *
+     * @param criptor      认证加密的 {@link SymmetricCriptor}
+     * @param segmentSize  明文分段大小，必须大于0
+     * @param forkJoinPool 并行加密使用的线程池，<code>null</code>时使用共享的默认线程池
+     */
+    public SegmentedFileWriter(SymmetricCriptor criptor, int segmentSize, ForkJoinPool forkJoinPool) {
+        //提前校验算法和分段大小
+        SegmentCodec.create(criptor, segmentSize);
+        this.criptor = criptor;
+        this.segmentSize = segmentSize;
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * 顺序加密输入流并写入输出流，内存占用为两个分段大小<br>
+     * 两个流均不会被关闭
+     *
+     * @param in  明文输入流
+     * @param out 密文输出流
+     * @return 写入输出流的字节数
+     */
+    public long write(InputStream in, OutputStream out) {
+        SegmentCodec codec = SegmentCodec.create(criptor, segmentSize);
+        //多读一个字节以判断当前段是否为最后一段
+        byte[] plain = new byte[segmentSize + 1];
+        byte[] cipherBytes = new byte[codec.getCipherSegmentSize()];
+        try {
+            out.write(codec.getHeader());
+            long total = SegmentCodec.HEADER_LENGTH;
+            int length = readFully(in, plain, 0);
+            for (long index = 0; ; index++) {
+                boolean last = length <= segmentSize;
+                int segmentLength = last ? length : segmentSize;
+                int size = codec.encryptSegment(index, last, ByteBuffer.wrap(plain, 0, segmentLength), ByteBuffer.wrap(cipherBytes));
+                out.write(cipherBytes, 0, size);
+                total += size;
+                if (last) {
+                    return total;
+                }
+                plain[0] = plain[segmentSize];
+                length = 1 + readFully(in, plain, 1);
+            }
+        } catch (IOException | GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 并行加密文件：各分段在线程池中同时读取、加密并按位置写入目标文件
+     *
+     * @param source 明文文件
+     * @param target 密文文件，已存在时覆盖
+     * @return 密文文件长度
+     */
+    public long write(File source, File target) {
+        final SegmentCodec codec = SegmentCodec.create(criptor, segmentSize);
+        FileChannel in = null;
+        FileChannel out = null;
+        try {
+            in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+            out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            final long plainLength = in.size();
+            final long segmentCount = codec.segmentCount(plainLength);
+            SegmentCodec.writeFully(out, ByteBuffer.wrap(codec.getHeader()), 0);
+
+            final FileChannel input = in;
+            final FileChannel output = out;
+            SegmentCodec.parallel(forkJoinPool, segmentCount, segmentSize, new SegmentCodec.SegmentRange() {
+                @Override
+                public void process(long from, long to) throws IOException, GeneralSecurityException {
+                    ByteBuffer plain = ByteBuffer.allocate(segmentSize);
+                    ByteBuffer cipherBuffer = ByteBuffer.allocate(codec.getCipherSegmentSize());
+                    for (long index = from; index < to; index++) {
+                        long position = index * segmentSize;
+                        plain.clear();
+                        plain.limit((int) Math.min(segmentSize, plainLength - position));
+                        SegmentCodec.readFully(input, plain, position);
+                        plain.flip();
+                        cipherBuffer.clear();
+                        codec.encryptSegment(index, index == segmentCount - 1, plain, cipherBuffer);
+                        cipherBuffer.flip();
+                        SegmentCodec.writeFully(output, cipherBuffer, codec.cipherPosition(index));
+                    }
+                }
+            });
+            return codec.cipherLength(plainLength);
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        } finally {
+            IoUtils.closeQuietly(in);
+            IoUtils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * 获得明文分段大小
+     *
+     * @return 分段大小
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * 读满缓冲的剩余部分，流结束时提前返回
+     *
+     * @return 读取的字节数
+     */
+    private static int readFully(InputStream in, byte[] buffer, int offset) throws IOException {
+        int total = 0;
+        for (int read; offset + total < buffer.length && (read = in.read(buffer, offset + total, buffer.length - offset - total)) != -1; ) {
+            total += read;
+        }
+        return total;
+    }
+}
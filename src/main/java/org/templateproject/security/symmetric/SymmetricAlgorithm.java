@@ -15,6 +15,13 @@ public enum SymmetricAlgorithm {
 	DESede("DESede"), 
 	RC2("RC2"),
 
+	/** AES-GCM认证加密，每次加密自动生成12字节随机数 */
+	AES_GCM("AES/GCM/NoPadding"),
+	/** ChaCha20-Poly1305认证加密（JDK 11+），每次加密自动生成12字节随机数 */
+	ChaCha20_Poly1305("ChaCha20-Poly1305"),
+	/** AES-CTR流模式，每次加密自动生成16字节IV，可多核并行加解密，不提供认证 */
+	AES_CTR("AES/CTR/NoPadding"),
+
 	PBEWithMD5AndDES("PBEWithMD5AndDES"), 
 	PBEWithSHA1AndDESede("PBEWithSHA1AndDESede"), 
 	PBEWithSHA1AndRC2_40("PBEWithSHA1AndRC2_40");
@@ -3,26 +3,65 @@ package org.templateproject.security.symmetric;
 import org.templateproject.security.exception.CryptoException;
 import org.templateproject.security.SecurityUtils;
 import org.templateproject.security.zsupport.FastByteArrayOutputStream;
+import org.templateproject.security.zsupport.IoUtils;
+import org.templateproject.security.zsupport.ObjectPool;
+import org.templateproject.security.zsupport.ProviderRegistry;
 
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.PBEParameterSpec;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.SecureRandom;
 import java.security.spec.AlgorithmParameterSpec;
-import java.util.Random;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * 对称加密算法<br>
+ * 此对象线程安全：每次加解密从池中借用一个已按密钥和参数初始化好的 {@link Cipher}，
+ * 不同线程之间互不阻塞，也不必在每次调用时重新执行 {@link Cipher#init}。
+ * <p>
+ * 对于需要随机数（nonce）的认证加密算法（{@link SymmetricAlgorithm#AES_GCM}、{@link SymmetricAlgorithm#ChaCha20_Poly1305}），
+ * 每次加密自动生成随机数，加密和认证一次完成，输出格式为：
+ * <pre>
+ * 随机数长度(1字节) || 随机数 || 密文 || 认证标签
+ * </pre>
+ * 解密时从密文头部读取随机数，认证失败时抛出 {@link CryptoException}。
+ * {@link SymmetricAlgorithm#AES_CTR} 以及 "AES/CBC/PKCS5Padding" 等其它非ECB分组模式的转换名称同样每次加密按分组大小生成随机IV，
+ * 并使用相同的头部格式，但不附带认证标签。
+ * <p>
+ * 大块内存数据可使用 {@link #encryptParallel(byte[])} 在多核上并行加密。
  *
  * @author Looly
  */
 public class SymmetricCriptor {
 
+    /**
+     * GCM认证标签长度（位）
+     */
+    private static final int GCM_TAG_BITS = 128;
+    /**
+     * 认证加密算法的随机数长度（字节）
+     */
+    private static final int AEAD_NONCE_LENGTH = 12;
+    /**
+     * 并行加解密的分块大小，CTR模式下需为分组长度的整数倍
+     */
+    static final int PARALLEL_SEGMENT_SIZE = 64 * 1024;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
     /**
      * SecretKey 负责保存对称密钥
      */
@@ -35,7 +74,30 @@ public class SymmetricCriptor {
      * 加密解密参数
      */
     private AlgorithmParameterSpec params;
-    private Lock lock = new ReentrantLock();
+    /**
+     * 每次加密随机生成的IV长度，为0表示算法不使用IV
+     */
+    private int ivLength;
+    /**
+     * 是否为GCM模式
+     */
+    private boolean gcm;
+    /**
+     * 是否为认证加密算法
+     */
+    private boolean aead;
+    /**
+     * 是否为CTR模式
+     */
+    private boolean ctr;
+    /**
+     * 加密模式的 {@link Cipher} 池，使用IV的算法在每次借出后按新IV重新初始化
+     */
+    private ObjectPool<Cipher> encryptPool;
+    /**
+     * 解密模式的 {@link Cipher} 池，使用IV的算法在每次借出后按密文中的IV重新初始化
+     */
+    private ObjectPool<Cipher> decryptPool;
 
     //------------------------------------------------------------------ Constructor start
 
@@ -83,16 +145,32 @@ public class SymmetricCriptor {
         this.secretKey = SecurityUtils.generateKey(algorithm, key);
         if (algorithm.startsWith("PBE")) {
             //对于PBE算法使用随机数加盐
-            Random random = new Random();
             byte[] bytes = new byte[8];
-            random.nextBytes(bytes);
+            RANDOM.nextBytes(bytes);
             this.params = new PBEParameterSpec(bytes, 100);
         }
         try {
-            cipher = Cipher.getInstance(algorithm);
+            cipher = ProviderRegistry.getCipher(algorithm);
         } catch (Exception e) {
             throw new CryptoException(e);
         }
+        String upperAlgorithm = algorithm.toUpperCase();
+        this.gcm = upperAlgorithm.contains("/GCM/");
+        this.aead = gcm || upperAlgorithm.startsWith("CHACHA20-POLY1305");
+        this.ctr = upperAlgorithm.contains("/CTR/");
+        if (aead) {
+            this.ivLength = AEAD_NONCE_LENGTH;
+        } else if (false == algorithm.startsWith("PBE") && isIvMode(upperAlgorithm)) {
+            //CBC、CFB、OFB、CTR等分组模式每次加密使用随机IV，并输出在密文头部
+            this.ivLength = cipher.getBlockSize();
+            if (ivLength <= 0) {
+                throw new CryptoException("Algorithm [" + algorithm + "] requires an IV but has no block size!");
+            }
+        } else {
+            this.ivLength = 0;
+        }
+        this.encryptPool = newCipherPool(Cipher.ENCRYPT_MODE);
+        this.decryptPool = newCipherPool(Cipher.DECRYPT_MODE);
         return this;
     }
 
@@ -105,18 +183,16 @@ public class SymmetricCriptor {
      * @return 加密后的bytes
      */
     public byte[] encrypt(byte[] data) {
-        lock.lock();
+        Cipher engine = encryptPool.acquire();
         try {
-            if (null == this.params) {
-                cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            } else {
-                cipher.init(Cipher.ENCRYPT_MODE, secretKey, params);
-            }
-            return cipher.doFinal(data);
+            byte[] iv = initEncrypt(engine);
+            byte[] result = new byte[headerLength() + engine.getOutputSize(data.length)];
+            int offset = writeHeader(iv, ByteBuffer.wrap(result));
+            int size = offset + engine.doFinal(data, 0, data.length, result, offset);
+            encryptPool.release(engine);
+            return size == result.length ? result : Arrays.copyOf(result, size);
         } catch (Exception e) {
             throw new CryptoException(e);
-        } finally {
-            lock.unlock();
         }
     }
 
@@ -157,27 +233,159 @@ public class SymmetricCriptor {
         }
     }
 
+    /**
+     * 流式加密，按块读取输入流并将加密结果写入输出流，内存占用与数据大小无关<br>
+     * 两个流均不会被关闭
+     *
+     * @param in  输入流
+     * @param out 输出流
+     * @return 写入输出流的字节数
+     */
+    public long encrypt(InputStream in, OutputStream out) {
+        Cipher engine = encryptPool.acquire();
+        long total;
+        try {
+            total = writeHeader(initEncrypt(engine), out);
+        } catch (IOException | GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+        total += transfer(engine, in, out);
+        encryptPool.release(engine);
+        return total;
+    }
+
+    /**
+     * 包装输出流，写入的数据被加密后写入被包装的流，关闭返回的流时完成加密（写出最后的填充块或认证标签）<br>
+     * 使用随机数的算法会在此方法中立即向被包装的流写入密文头部
+     *
+     * @param out 被包装的输出流
+     * @return 加密输出流 {@link CipherOutputStream}
+     */
+    public CipherOutputStream encryptStream(OutputStream out) {
+        Cipher engine = newCipher(Cipher.ENCRYPT_MODE);
+        try {
+            writeHeader(initEncrypt(engine), out);
+        } catch (IOException | GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+        return new CipherOutputStream(out, engine);
+    }
+
+    /**
+     * 加密 {@link ByteBuffer} 中的剩余数据，支持堆内和堆外缓冲，数据直接交给 {@link Cipher} 而不复制到堆内数组<br>
+     * 完成后缓冲的position移动到limit
+     *
+     * @param data 被加密的数据缓冲
+     * @return 加密后的bytes
+     */
+    public byte[] encrypt(ByteBuffer data) {
+        Cipher engine = encryptPool.acquire();
+        try {
+            byte[] iv = initEncrypt(engine);
+            byte[] result = new byte[headerLength() + engine.getOutputSize(data.remaining())];
+            ByteBuffer out = ByteBuffer.wrap(result);
+            int size = writeHeader(iv, out) + engine.doFinal(data, out);
+            encryptPool.release(engine);
+            return size == result.length ? result : Arrays.copyOf(result, size);
+        } catch (Exception e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 加密 {@link ByteBuffer} 中的剩余数据，结果写入输出缓冲的当前位置<br>
+     * 输入和输出均支持堆内和堆外缓冲，输出缓冲剩余空间需不小于 {@link #getOutputSize(int, boolean)}
+     *
+     * @param data 被加密的数据缓冲
+     * @param out  输出缓冲
+     * @return 写入输出缓冲的字节数
+     */
+    public int encrypt(ByteBuffer data, ByteBuffer out) {
+        Cipher engine = encryptPool.acquire();
+        try {
+            int result = writeHeader(initEncrypt(engine), out) + engine.doFinal(data, out);
+            encryptPool.release(engine);
+            return result;
+        } catch (Exception e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 使用共享的默认线程池并行加密，见 {@link #encryptParallel(byte[], ForkJoinPool)}
+     *
+     * @param data 被加密的bytes
+     * @return 加密后的bytes
+     */
+    public byte[] encryptParallel(byte[] data) {
+        return encryptParallel(data, null);
+    }
+
+    /**
+     * 将数据分块后在 {@link ForkJoinPool} 中并行加密，结果写入一次分配好的输出数组<br>
+     * <ul>
+     * <li>CTR模式：各块使用按块偏移递增后的计数器，结果与 {@link #encrypt(byte[])} 的格式完全相同，可用任一解密方法解密</li>
+     * <li>认证加密算法：使用 {@link SegmentedFileWriter} 的分段格式，每次加密由随机盐派生独立密钥，每段使用独立随机数，
+     * 可用 {@link #decryptParallel(byte[])}、{@link #decrypt(byte[])}、{@link #decrypt(InputStream)} 解密，流式和 {@link ByteBuffer} 解密方法不能识别此格式</li>
+     * <li>其他算法：等同于 {@link #encrypt(byte[])}</li>
+     * </ul>
+     *
+     * @param data         被加密的bytes
+     * @param forkJoinPool 线程池，<code>null</code>时使用共享的默认线程池
+     * @return 加密后的bytes
+     */
+    public byte[] encryptParallel(final byte[] data, ForkJoinPool forkJoinPool) {
+        if (aead) {
+            final SegmentCodec codec = SegmentCodec.create(this, PARALLEL_SEGMENT_SIZE);
+            final long segmentCount = codec.segmentCount(data.length);
+            final byte[] result = new byte[toArrayLength(codec.cipherLength(data.length))];
+            System.arraycopy(codec.getHeader(), 0, result, 0, SegmentCodec.HEADER_LENGTH);
+            SegmentCodec.parallel(forkJoinPool, segmentCount, PARALLEL_SEGMENT_SIZE, new SegmentCodec.SegmentRange() {
+                @Override
+                public void process(long from, long to) throws GeneralSecurityException {
+                    for (long index = from; index < to; index++) {
+                        int offset = (int) (index * PARALLEL_SEGMENT_SIZE);
+                        int length = Math.min(PARALLEL_SEGMENT_SIZE, data.length - offset);
+                        int cipherPosition = (int) codec.cipherPosition(index);
+                        codec.encryptSegment(index, index == segmentCount - 1, ByteBuffer.wrap(data, offset, length),
+                                ByteBuffer.wrap(result, cipherPosition, length + SegmentCodec.TAG_LENGTH));
+                    }
+                }
+            });
+            return result;
+        }
+        if (!ctr) {
+            return encrypt(data);
+        }
+        final byte[] iv = new byte[ivLength];
+        RANDOM.nextBytes(iv);
+        final byte[] result = new byte[toArrayLength((long) headerLength() + data.length)];
+        final int offset = writeHeader(iv, ByteBuffer.wrap(result));
+        transformCtr(Cipher.ENCRYPT_MODE, iv, data, 0, data.length, result, offset, forkJoinPool);
+        return result;
+    }
+
     //--------------------------------------------------------------------------------- Decrypt
 
     /**
-     * 解密
+     * 解密<br>
+     * 认证加密算法可识别 {@link #encryptParallel(byte[])} 生成的分段格式，此时按 {@link #decryptParallel(byte[])} 解密
      *
      * @param bytes 被解密的bytes
      * @return 解密后的bytes
      */
     public byte[] decrypt(byte[] bytes) {
-        lock.lock();
+        if (aead && SegmentCodec.isSegmented(bytes)) {
+            return decryptParallel(bytes);
+        }
+        Cipher engine = decryptPool.acquire();
         try {
-            if (null == this.params) {
-                cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            } else {
-                cipher.init(Cipher.DECRYPT_MODE, secretKey, params);
-            }
-            return cipher.doFinal(bytes);
+            int offset = initDecrypt(engine, readIv(ByteBuffer.wrap(bytes)));
+            byte[] result = engine.doFinal(bytes, offset, bytes.length - offset);
+            decryptPool.release(engine);
+            return result;
         } catch (Exception e) {
             throw new CryptoException(e);
-        } finally {
-            lock.unlock();
         }
     }
 
@@ -195,6 +403,135 @@ public class SymmetricCriptor {
         }
     }
 
+    /**
+     * 流式解密，按块读取输入流并将解密结果写入输出流，内存占用与数据大小无关<br>
+     * 注意：认证加密算法需在校验认证标签后才能输出明文，JDK会在内部缓存全部密文，大文件可使用 {@link SegmentedFileWriter} 分段加密<br>
+     * 两个流均不会被关闭
+     *
+     * @param in  输入流
+     * @param out 输出流
+     * @return 写入输出流的字节数
+     */
+    public long decrypt(InputStream in, OutputStream out) {
+        Cipher engine = decryptPool.acquire();
+        try {
+            initDecrypt(engine, readIv(in));
+        } catch (IOException | GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+        long total = transfer(engine, in, out);
+        decryptPool.release(engine);
+        return total;
+    }
+
+    /**
+     * 包装输入流，从返回的流中读取的数据为被包装流中密文的解密结果<br>
+     * 使用随机数的算法会在此方法中立即从被包装的流读取密文头部
+     *
+     * @param in 被包装的输入流，内容为密文
+     * @return 解密输入流 {@link CipherInputStream}
+     */
+    public CipherInputStream decryptStream(InputStream in) {
+        Cipher engine = newCipher(Cipher.DECRYPT_MODE);
+        try {
+            initDecrypt(engine, readIv(in));
+        } catch (IOException | GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+        return new CipherInputStream(in, engine);
+    }
+
+    /**
+     * 解密 {@link ByteBuffer} 中的剩余数据，支持堆内和堆外缓冲，数据直接交给 {@link Cipher} 而不复制到堆内数组<br>
+     * 完成后缓冲的position移动到limit
+     *
+     * @param data 被解密的数据缓冲
+     * @return 解密后的bytes
+     */
+    public byte[] decrypt(ByteBuffer data) {
+        Cipher engine = decryptPool.acquire();
+        try {
+            initDecrypt(engine, readIv(data));
+            byte[] result = doFinal(engine, data);
+            decryptPool.release(engine);
+            return result;
+        } catch (Exception e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 解密 {@link ByteBuffer} 中的剩余数据，结果写入输出缓冲的当前位置<br>
+     * 输入和输出均支持堆内和堆外缓冲，输出缓冲剩余空间需不小于 {@link #getOutputSize(int, boolean)}
+     *
+     * @param data 被解密的数据缓冲
+     * @param out  输出缓冲
+     * @return 写入输出缓冲的字节数
+     */
+    public int decrypt(ByteBuffer data, ByteBuffer out) {
+        Cipher engine = decryptPool.acquire();
+        try {
+            initDecrypt(engine, readIv(data));
+            int result = engine.doFinal(data, out);
+            decryptPool.release(engine);
+            return result;
+        } catch (Exception e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 使用共享的默认线程池并行解密，见 {@link #decryptParallel(byte[], ForkJoinPool)}
+     *
+     * @param bytes 被解密的bytes
+     * @return 解密后的bytes
+     */
+    public byte[] decryptParallel(byte[] bytes) {
+        return decryptParallel(bytes, null);
+    }
+
+    /**
+     * 解密 {@link #encryptParallel(byte[], ForkJoinPool)} 的结果，CTR模式和认证加密算法在 {@link ForkJoinPool} 中并行处理<br>
+     * CTR模式也可解密 {@link #encrypt(byte[])} 的结果；认证加密算法任一分段认证失败时抛出 {@link CryptoException}
+     *
+     * @param bytes        被解密的bytes
+     * @param forkJoinPool 线程池，<code>null</code>时使用共享的默认线程池
+     * @return 解密后的bytes
+     */
+    public byte[] decryptParallel(final byte[] bytes, ForkJoinPool forkJoinPool) {
+        if (aead) {
+            if (bytes.length < SegmentCodec.HEADER_LENGTH) {
+                throw new CryptoException("Invalid ciphertext header!");
+            }
+            final SegmentCodec codec = SegmentCodec.parse(this, Arrays.copyOf(bytes, SegmentCodec.HEADER_LENGTH));
+            final int segmentSize = codec.getSegmentSize();
+            final long plainLength = codec.plainLength(bytes.length);
+            final long segmentCount = codec.segmentCount(plainLength);
+            final byte[] result = new byte[(int) plainLength];
+            SegmentCodec.parallel(forkJoinPool, segmentCount, segmentSize, new SegmentCodec.SegmentRange() {
+                @Override
+                public void process(long from, long to) throws GeneralSecurityException {
+                    for (long index = from; index < to; index++) {
+                        int offset = (int) (index * segmentSize);
+                        int length = (int) Math.min(segmentSize, plainLength - offset);
+                        codec.decryptSegment(index, index == segmentCount - 1,
+                                ByteBuffer.wrap(bytes, (int) codec.cipherPosition(index), length + SegmentCodec.TAG_LENGTH),
+                                ByteBuffer.wrap(result, offset, length));
+                    }
+                }
+            });
+            return result;
+        }
+        if (!ctr) {
+            return decrypt(bytes);
+        }
+        byte[] iv = readIv(ByteBuffer.wrap(bytes));
+        int offset = headerLength();
+        byte[] result = new byte[bytes.length - offset];
+        transformCtr(Cipher.DECRYPT_MODE, iv, bytes, offset, result.length, result, 0, forkJoinPool);
+        return result;
+    }
+
     //--------------------------------------------------------------------------------- Getters
 
     /**
@@ -207,7 +544,8 @@ public class SymmetricCriptor {
     }
 
     /**
-     * 获得加密或解密器
+     * 获得加密或解密器<br>
+     * 返回的对象仅用于查询算法和Provider等信息，加解密使用的是池中各自独立的 {@link Cipher}
      *
      * @return 加密或解密
      */
@@ -215,6 +553,382 @@ public class SymmetricCriptor {
         return cipher;
     }
 
+    /**
+     * 是否为认证加密算法（每次加密生成随机数并附带认证标签）
+     *
+     * @return 是否为认证加密算法
+     */
+    public boolean isAead() {
+        return aead;
+    }
+
+    /**
+     * 计算输出缓冲所需的最大长度，已包含认证加密算法的密文头部
+     *
+     * @param inputLength 输入数据长度
+     * @param encrypt     <code>true</code>加密，<code>false</code>解密
+     * @return 输出最大长度
+     */
+    public int getOutputSize(int inputLength, boolean encrypt) {
+        int blockSize = Math.max(cipher.getBlockSize(), 1);
+        if (encrypt) {
+            return headerLength() + inputLength + blockSize + GCM_TAG_BITS / 8;
+        }
+        return Math.max(inputLength - headerLength(), 0) + blockSize;
+    }
+
+    /**
+     * 从池中借出一个按指定密钥和IV初始化好的 {@link Cipher}，供同包中自行管理密钥和随机数的分段格式使用<br>
+     * 使用完毕后需通过 {@link #releaseCipher(int, Cipher)} 归还
+     *
+     * @param mode 模式，{@link Cipher#ENCRYPT_MODE} 或 {@link Cipher#DECRYPT_MODE}
+     * @param key  密钥，与本对象密钥算法相同，例如由本对象密钥派生的分段密钥
+     * @param iv   IV，长度需与算法的随机数长度一致
+     * @return 已初始化的 {@link Cipher}
+     * @throws GeneralSecurityException 初始化失败
+     */
+    Cipher acquireCipher(int mode, SecretKey key, byte[] iv) throws GeneralSecurityException {
+        if (Cipher.ENCRYPT_MODE == mode) {
+            Cipher engine = encryptPool.acquire();
+            engine.init(Cipher.ENCRYPT_MODE, key, ivSpec(iv));
+            return engine;
+        }
+        Cipher engine = decryptPool.acquire();
+        initDecrypt(engine, key, iv);
+        return engine;
+    }
+
+    /**
+     * 归还由 {@link #acquireCipher(int, SecretKey, byte[])} 借出的 {@link Cipher}
+     *
+     * @param mode   借出时的模式
+     * @param engine {@link Cipher}
+     */
+    void releaseCipher(int mode, Cipher engine) {
+        (Cipher.ENCRYPT_MODE == mode ? encryptPool : decryptPool).release(engine);
+    }
+
+    /**
+     * 获得每次加密使用的IV长度，不使用IV的算法为0
+     *
+     * @return IV长度
+     */
+    int getIvLength() {
+        return ivLength;
+    }
+
+    /**
+     * CTR模式并行处理：按 {@link #PARALLEL_SEGMENT_SIZE} 分块，每块的计数器为初始IV加上块起点之前的分组数
+     *
+     * @param mode         模式
+     * @param iv           初始计数器
+     * @param in           输入数组
+     * @param inOffset     输入起始位置
+     * @param length       数据长度
+     * @param out          输出数组
+     * @param outOffset    输出起始位置
+     * @param forkJoinPool 线程池
+     */
+    private void transformCtr(final int mode, final byte[] iv, final byte[] in, final int inOffset, final int length,
+                              final byte[] out, final int outOffset, ForkJoinPool forkJoinPool) {
+        final int blockSize = ivLength;
+        long segmentCount = Math.max(1, (length + PARALLEL_SEGMENT_SIZE - 1) / PARALLEL_SEGMENT_SIZE);
+        SegmentCodec.parallel(forkJoinPool, segmentCount, PARALLEL_SEGMENT_SIZE, new SegmentCodec.SegmentRange() {
+            @Override
+            public void process(long from, long to) throws GeneralSecurityException {
+                int start = (int) (from * PARALLEL_SEGMENT_SIZE);
+                int end = (int) Math.min(length, to * PARALLEL_SEGMENT_SIZE);
+                Cipher engine = acquireCipher(mode, secretKey, addCounter(iv, start / blockSize));
+                engine.doFinal(in, inOffset + start, end - start, out, outOffset + start);
+                releaseCipher(mode, engine);
+            }
+        });
+    }
+
+    /**
+     * 计算大端128位计数器加上指定分组数后的值
+     *
+     * @param iv     初始计数器
+     * @param blocks 分组数
+     * @return 新的计数器
+     */
+    private static byte[] addCounter(byte[] iv, long blocks) {
+        byte[] counter = iv.clone();
+        long carry = blocks;
+        for (int i = counter.length - 1; i >= 0 && carry != 0; i--) {
+            long sum = (counter[i] & 0xFF) + (carry & 0xFF);
+            counter[i] = (byte) sum;
+            carry = (carry >>> 8) + (sum >>> 8);
+        }
+        return counter;
+    }
+
+    /**
+     * 检查输出长度是否可以放入一个数组
+     */
+    private static int toArrayLength(long length) {
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new CryptoException("Output too large for a byte array: " + length);
+        }
+        return (int) length;
+    }
+
+    /**
+     * 创建指定模式的 {@link Cipher} 池
+     *
+     * @param mode 模式，{@link Cipher#ENCRYPT_MODE} 或 {@link Cipher#DECRYPT_MODE}
+     * @return {@link ObjectPool}
+     */
+    private ObjectPool<Cipher> newCipherPool(final int mode) {
+        return new ObjectPool<Cipher>() {
+            @Override
+            protected Cipher create() {
+                return newCipher(mode);
+            }
+        };
+    }
+
+    /**
+     * 创建一个与本对象算法相同的 {@link Cipher}，Provider由 {@link ProviderRegistry} 决定，未指定优先Provider时在init时按密钥选择<br>
+     * 不使用IV的算法直接按密钥和参数初始化；使用IV的算法在每次使用前按IV初始化
+     *
+     * @param mode 模式，{@link Cipher#ENCRYPT_MODE} 或 {@link Cipher#DECRYPT_MODE}
+     * @return {@link Cipher}
+     */
+    private Cipher newCipher(int mode) {
+        try {
+            Cipher newCipher = ProviderRegistry.getCipher(cipher.getAlgorithm());
+            if (ivLength > 0) {
+                return newCipher;
+            }
+            if (null == this.params) {
+                newCipher.init(mode, secretKey);
+            } else {
+                newCipher.init(mode, secretKey, params);
+            }
+            return newCipher;
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 使用IV的算法生成随机IV并初始化为加密模式
+     *
+     * @param engine {@link Cipher}
+     * @return 生成的IV，不使用IV的算法返回<code>null</code>
+     * @throws GeneralSecurityException 初始化失败
+     */
+    private byte[] initEncrypt(Cipher engine) throws GeneralSecurityException {
+        if (ivLength == 0) {
+            return null;
+        }
+        byte[] iv = new byte[ivLength];
+        RANDOM.nextBytes(iv);
+        engine.init(Cipher.ENCRYPT_MODE, secretKey, ivSpec(iv));
+        return iv;
+    }
+
+    /**
+     * 使用IV的算法按密文中的IV初始化为解密模式
+     *
+     * @param engine {@link Cipher}
+     * @param iv     密文头部中的IV，不使用IV的算法为<code>null</code>
+     * @return 密文头部长度
+     * @throws GeneralSecurityException 初始化失败
+     */
+    private int initDecrypt(Cipher engine, byte[] iv) throws GeneralSecurityException {
+        return initDecrypt(engine, secretKey, iv);
+    }
+
+    /**
+     * 使用IV的算法按指定密钥和IV初始化为解密模式
+     *
+     * @param engine {@link Cipher}
+     * @param key    密钥
+     * @param iv     IV，不使用IV的算法为<code>null</code>
+     * @return 密文头部长度
+     * @throws GeneralSecurityException 初始化失败
+     */
+    private int initDecrypt(Cipher engine, SecretKey key, byte[] iv) throws GeneralSecurityException {
+        if (null == iv) {
+            return 0;
+        }
+        try {
+            engine.init(Cipher.DECRYPT_MODE, key, ivSpec(iv));
+        } catch (InvalidKeyException e) {
+            if (gcm) {
+                throw e;
+            }
+            //ChaCha20-Poly1305拒绝以与上次相同的密钥和随机数重新初始化（同一密文被同一对象解密两次），先用临时随机数重置
+            byte[] resetIv = new byte[ivLength];
+            RANDOM.nextBytes(resetIv);
+            engine.init(Cipher.DECRYPT_MODE, key, ivSpec(resetIv));
+            engine.init(Cipher.DECRYPT_MODE, key, ivSpec(iv));
+        }
+        return headerLength();
+    }
+
+    /**
+     * 转换名称中的分组模式是否需要IV，例如 "AES/CBC/PKCS5Padding"，ECB模式和未指定模式的算法不需要
+     *
+     * @param upperAlgorithm 大写的算法或转换名称
+     * @return 是否需要IV
+     */
+    private static boolean isIvMode(String upperAlgorithm) {
+        int first = upperAlgorithm.indexOf('/');
+        if (first < 0) {
+            return false;
+        }
+        int second = upperAlgorithm.indexOf('/', first + 1);
+        String mode = (second < 0 ? upperAlgorithm.substring(first + 1) : upperAlgorithm.substring(first + 1, second)).trim();
+        return mode.length() > 0 && false == "ECB".equals(mode) && false == "NONE".equals(mode);
+    }
+
+    /**
+     * 根据算法创建IV参数
+     *
+     * @param iv IV
+     * @return {@link AlgorithmParameterSpec}
+     */
+    private AlgorithmParameterSpec ivSpec(byte[] iv) {
+        return gcm ? new GCMParameterSpec(GCM_TAG_BITS, iv) : new IvParameterSpec(iv);
+    }
+
+    /**
+     * 密文头部长度，不使用IV的算法为0
+     *
+     * @return 头部长度
+     */
+    private int headerLength() {
+        return ivLength == 0 ? 0 : 1 + ivLength;
+    }
+
+    /**
+     * 写入密文头部
+     *
+     * @param iv  IV，为<code>null</code>时不写入
+     * @param out 输出缓冲
+     * @return 写入的字节数
+     */
+    private static int writeHeader(byte[] iv, ByteBuffer out) {
+        if (null == iv) {
+            return 0;
+        }
+        out.put((byte) iv.length).put(iv);
+        return 1 + iv.length;
+    }
+
+    /**
+     * 写入密文头部
+     *
+     * @param iv  IV，为<code>null</code>时不写入
+     * @param out 输出流
+     * @return 写入的字节数
+     * @throws IOException IO异常
+     */
+    private static int writeHeader(byte[] iv, OutputStream out) throws IOException {
+        if (null == iv) {
+            return 0;
+        }
+        out.write(iv.length);
+        out.write(iv);
+        return 1 + iv.length;
+    }
+
+    /**
+     * 从缓冲中读取密文头部，完成后缓冲的position位于头部之后
+     *
+     * @param data 密文缓冲
+     * @return IV，不使用IV的算法返回<code>null</code>
+     */
+    private byte[] readIv(ByteBuffer data) {
+        if (ivLength == 0) {
+            return null;
+        }
+        if (data.remaining() < headerLength() || data.get() != ivLength) {
+            throw new CryptoException("Invalid ciphertext header!");
+        }
+        byte[] iv = new byte[ivLength];
+        data.get(iv);
+        return iv;
+    }
+
+    /**
+     * 从流中读取密文头部
+     *
+     * @param in 密文流
+     * @return IV，不使用IV的算法返回<code>null</code>
+     * @throws IOException IO异常
+     */
+    private byte[] readIv(InputStream in) throws IOException {
+        if (ivLength == 0) {
+            return null;
+        }
+        if (in.read() != ivLength) {
+            throw new CryptoException("Invalid ciphertext header!");
+        }
+        byte[] iv = new byte[ivLength];
+        for (int offset = 0, read; offset < ivLength; offset += read) {
+            read = in.read(iv, offset, ivLength - offset);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of ciphertext header!");
+            }
+        }
+        return iv;
+    }
+
+    /**
+     * 使用给定的 {@link Cipher} 按块处理输入流并写入输出流，输入输出缓冲在开始时一次分配
+     *
+     * @param cipher 已初始化的 {@link Cipher}
+     * @param in     输入流
+     * @param out    输出流
+     * @return 写入输出流的字节数
+     */
+    private static long transfer(Cipher cipher, InputStream in, OutputStream out) {
+        if (null == in) {
+            throw new NullPointerException("InputStream is null!");
+        }
+        if (null == out) {
+            throw new NullPointerException("OutputStream is null!");
+        }
+        byte[] input = new byte[IoUtils.MAX_BUFFER_SIZE];
+        byte[] output = new byte[cipher.getOutputSize(input.length)];
+        long total = 0;
+        try {
+            for (int read; (read = in.read(input)) != -1; ) {
+                int size = cipher.update(input, 0, read, output, 0);
+                out.write(output, 0, size);
+                total += size;
+            }
+            int required = cipher.getOutputSize(0);
+            if (required > output.length) {
+                output = new byte[required];
+            }
+            int size = cipher.doFinal(output, 0);
+            out.write(output, 0, size);
+            total += size;
+        } catch (IOException | GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+        return total;
+    }
+
+    /**
+     * 处理 {@link ByteBuffer} 中的剩余数据，返回结果bytes
+     *
+     * @param cipher 已初始化的 {@link Cipher}
+     * @param data   数据缓冲
+     * @return 结果bytes
+     * @throws GeneralSecurityException 加解密失败
+     */
+    private static byte[] doFinal(Cipher cipher, ByteBuffer data) throws GeneralSecurityException {
+        byte[] result = new byte[cipher.getOutputSize(data.remaining())];
+        int size = cipher.doFinal(data, ByteBuffer.wrap(result));
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
     /**
      * 从流中读取bytes
      *
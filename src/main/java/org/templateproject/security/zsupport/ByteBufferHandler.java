@@ -0,0 +1,19 @@
+package org.templateproject.security.zsupport;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link ByteBuffer} 数据块处理器，用于将按块读取的数据交给摘要、Mac等引擎处理
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public interface ByteBufferHandler {
+
+    /**
+     * 处理一个数据块，数据范围为 position 到 limit，处理完成后 position 应等于 limit
+     *
+     * @param buffer 数据块
+     */
+    void handle(ByteBuffer buffer);
+}
@@ -0,0 +1,33 @@
+package org.templateproject.security.zsupport;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 共享线程池<br>
+ * 树形摘要、分段加解密、批量验签等并行操作未指定线程池时统一使用 {@link #getDefault()}，
+ * 整个库只创建一个并行度等于CPU核数的 {@link ForkJoinPool}，首次使用时才创建，不占用 {@link ForkJoinPool#commonPool()}。
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public final class ForkJoinPools {
+
+    private ForkJoinPools() {
+    }
+
+    /**
+     * 获得共享的默认线程池
+     *
+     * @return {@link ForkJoinPool}
+     */
+    public static ForkJoinPool getDefault() {
+        return DefaultPoolHolder.POOL;
+    }
+
+    /**
+     * 延迟创建的共享线程池
+     */
+    private static class DefaultPoolHolder {
+        private static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+}
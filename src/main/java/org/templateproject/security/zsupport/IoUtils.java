@@ -0,0 +1,185 @@
+package org.templateproject.security.zsupport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+
+/**
+ * IO工具类，提供基于 {@link FileChannel} 的文件分块读取
+ * <p>
+ * 小文件使用与文件大小相适应的堆内缓冲区读取，较大的文件按 {@link #MAP_CHUNK_SIZE} 分段映射到内存，
+ * 单段不超过2GB的映射上限，因此可处理任意大小的文件。
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public final class IoUtils {
+
+    /**
+     * 最小读缓冲大小：4KB
+     */
+    public static final int MIN_BUFFER_SIZE = 4 * 1024;
+    /**
+     * 最大读缓冲大小：64KB
+     */
+    public static final int MAX_BUFFER_SIZE = 64 * 1024;
+    /**
+     * 超过此大小的数据使用内存映射读取：1MB
+     */
+    public static final long MAP_THRESHOLD = 1024 * 1024;
+    /**
+     * 内存映射的分段大小：64MB
+     */
+    public static final int MAP_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * 线程内复用的堆内读缓冲，借出期间置空，避免重入时被覆盖
+     */
+    private static final ThreadLocal<byte[]> LOCAL_BUFFER = new ThreadLocal<>();
+    /**
+     * 线程内复用的堆外读缓冲，堆外缓冲分配代价较高，因此每个线程只分配一次
+     */
+    private static final ThreadLocal<ByteBuffer> LOCAL_DIRECT_BUFFER = new ThreadLocal<>();
+
+    private IoUtils() {
+    }
+
+    /**
+     * 借出当前线程复用的 {@link #MAX_BUFFER_SIZE} 大小的读缓冲，使用完毕后通过 {@link #releaseBuffer(byte[])} 归还
+     *
+     * @return 读缓冲
+     */
+    public static byte[] acquireBuffer() {
+        byte[] buffer = LOCAL_BUFFER.get();
+        if (null == buffer) {
+            return new byte[MAX_BUFFER_SIZE];
+        }
+        LOCAL_BUFFER.set(null);
+        return buffer;
+    }
+
+    /**
+     * 归还由 {@link #acquireBuffer()} 借出的读缓冲
+     *
+     * @param buffer 读缓冲
+     */
+    public static void releaseBuffer(byte[] buffer) {
+        if (null != buffer && buffer.length == MAX_BUFFER_SIZE) {
+            LOCAL_BUFFER.set(buffer);
+        }
+    }
+
+    /**
+     * 根据数据长度计算读缓冲大小，结果为2的幂并介于 {@link #MIN_BUFFER_SIZE} 和 {@link #MAX_BUFFER_SIZE} 之间
+     *
+     * @param length 数据长度，未知时传入负数
+     * @return 缓冲大小
+     */
+    public static int adaptiveBufferSize(long length) {
+        if (length < 0 || length >= MAX_BUFFER_SIZE) {
+            return MAX_BUFFER_SIZE;
+        }
+        if (length <= MIN_BUFFER_SIZE) {
+            return MIN_BUFFER_SIZE;
+        }
+        int size = Integer.highestOneBit((int) length);
+        return size == length ? size : size << 1;
+    }
+
+    /**
+     * 分块读取通道中指定范围的数据并交给处理器<br>
+     * 使用绝对位置读取，不改变通道的当前位置，因此同一通道可被多个线程并发读取不同范围
+     *
+     * @param channel  {@link FileChannel}
+     * @param position 起始位置
+     * @param length   读取长度
+     * @param handler  {@link ByteBufferHandler}
+     * @throws IOException IO异常
+     */
+    public static void read(FileChannel channel, long position, long length, ByteBufferHandler handler) throws IOException {
+        long end = position + length;
+        if (length >= MAP_THRESHOLD) {
+            for (long offset = position; offset < end; ) {
+                int size = (int) Math.min(MAP_CHUNK_SIZE, end - offset);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+                handler.handle(mapped);
+                offset += size;
+            }
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(adaptiveBufferSize(length));
+        for (long offset = position; offset < end; ) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - offset));
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                break;
+            }
+            buffer.flip();
+            handler.handle(buffer);
+            offset += read;
+        }
+    }
+
+    /**
+     * 读取通道中剩余的全部数据并交给处理器<br>
+     * {@link FileChannel} 从当前位置起按 {@link #read(FileChannel, long, long, ByteBufferHandler)} 读取，完成后位置移动到末尾；
+     * 其他通道使用线程内复用的堆外缓冲读取，数据不经过堆内数组。<br>
+     * 只支持阻塞通道：非阻塞通道在没有数据时读取返回0，循环读取会空转，因此非阻塞模式的 {@link SelectableChannel} 直接被拒绝
+     *
+     * @param channel {@link ReadableByteChannel}
+     * @param handler {@link ByteBufferHandler}
+     * @throws IOException              IO异常
+     * @throws IllegalArgumentException 通道为非阻塞模式的 {@link SelectableChannel}
+     */
+    public static void read(ReadableByteChannel channel, ByteBufferHandler handler) throws IOException {
+        if (channel instanceof SelectableChannel && false == ((SelectableChannel) channel).isBlocking()) {
+            throw new IllegalArgumentException("Non-blocking channel is not supported!");
+        }
+        if (channel instanceof FileChannel) {
+            FileChannel fileChannel = (FileChannel) channel;
+            long position = fileChannel.position();
+            long length = Math.max(0, fileChannel.size() - position);
+            read(fileChannel, position, length, handler);
+            fileChannel.position(position + length);
+            return;
+        }
+        ByteBuffer buffer = LOCAL_DIRECT_BUFFER.get();
+        if (null == buffer) {
+            buffer = ByteBuffer.allocateDirect(MAX_BUFFER_SIZE);
+        } else {
+            LOCAL_DIRECT_BUFFER.set(null);
+        }
+        try {
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                if (buffer.hasRemaining()) {
+                    handler.handle(buffer);
+                }
+                buffer.clear();
+            }
+        } finally {
+            LOCAL_DIRECT_BUFFER.set(buffer);
+        }
+    }
+
+    /**
+     * 关闭资源，忽略关闭时的异常
+     *
+     * @param closeable 资源，可为<code>null</code>
+     */
+    public static void closeQuietly(Closeable closeable) {
+        if (null != closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                // ignore
+            }
+        }
+    }
+}
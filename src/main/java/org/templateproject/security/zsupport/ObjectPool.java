@@ -0,0 +1,95 @@
+package org.templateproject.security.zsupport;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 无锁对象池，用于复用创建代价较高且非线程安全的对象（例如 MessageDigest、Mac、Cipher）
+ * <p>
+ * 借出的对象由借用线程独占，使用完毕后通过 {@link #release(Object)} 归还；池中没有空闲对象时调用 {@link #create()} 新建。
+ * 空闲对象数量不超过 maxIdle，超出部分在归还时直接丢弃交给GC。
+ *
+ * @param <T> 池化对象类型
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public abstract class ObjectPool<T> {
+
+    /**
+     * 默认最大空闲对象数：CPU核数的两倍
+     */
+    public static final int DEFAULT_MAX_IDLE = Runtime.getRuntime().availableProcessors() * 2;
+
+    private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final int maxIdle;
+
+    public ObjectPool() {
+        this(DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * 构造
+     *
+     * @param maxIdle 最大空闲对象数，小于1时使用 {@link #DEFAULT_MAX_IDLE}
+     */
+    public ObjectPool(int maxIdle) {
+        this.maxIdle = maxIdle < 1 ? DEFAULT_MAX_IDLE : maxIdle;
+    }
+
+    /**
+     * 新建一个池化对象
+     *
+     * @return 池化对象
+     */
+    protected abstract T create();
+
+    /**
+     * 借出一个对象，池中没有空闲对象时新建
+     *
+     * @return 池化对象
+     */
+    public T acquire() {
+        T object = idle.poll();
+        if (null == object) {
+            return create();
+        }
+        idleCount.decrementAndGet();
+        return object;
+    }
+
+    /**
+     * 归还对象，调用方需保证对象已恢复到可复用的状态
+     *
+     * @param object 池化对象
+     */
+    public void release(T object) {
+        if (null == object) {
+            return;
+        }
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offer(object);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * 清空所有空闲对象
+     */
+    public void clear() {
+        while (null != idle.poll()) {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * 获得当前空闲对象数
+     *
+     * @return 空闲对象数
+     */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+}
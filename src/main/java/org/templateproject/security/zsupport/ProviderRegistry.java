@@ -0,0 +1,219 @@
+package org.templateproject.security.zsupport;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKeyFactory;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Security;
+import java.security.Signature;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 算法Provider注册表<br>
+ * 不指定Provider的 getInstance(String) 每次都要遍历全部已安装的Provider并经过JCA内部的同步路径。
+ * 对于不接收密钥的引擎（{@link MessageDigest}、{@link KeyFactory}、{@link KeyPairGenerator}、{@link SecretKeyFactory}），
+ * 此类对每种引擎类型和算法只解析一次Provider并缓存，之后通过 getInstance(String, Provider) 直接从该Provider创建引擎。<br>
+ * {@link Cipher}、{@link Mac}、{@link Signature}、{@link KeyGenerator}、{@link KeyAgreement} 不固定Provider，仍使用 getInstance(String)，
+ * 由JCA在init时根据密钥类型延迟选择Provider，因此PKCS11等硬件密钥可以交给能处理它的Provider。<br>
+ * 可通过 {@link #setPreferredProvider(Provider)} 指定优先使用的Provider（例如硬件加速或FIPS Provider），不支持的算法回退到系统Provider列表；
+ * 优先Provider支持的算法总是从该Provider创建引擎，包括上述延迟选择的引擎类型。
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public final class ProviderRegistry {
+
+    public static final String MESSAGE_DIGEST = "MessageDigest";
+    public static final String MAC = "Mac";
+    public static final String CIPHER = "Cipher";
+    public static final String SIGNATURE = "Signature";
+    public static final String KEY_FACTORY = "KeyFactory";
+    public static final String KEY_PAIR_GENERATOR = "KeyPairGenerator";
+    public static final String KEY_GENERATOR = "KeyGenerator";
+    public static final String SECRET_KEY_FACTORY = "SecretKeyFactory";
+    public static final String KEY_AGREEMENT = "KeyAgreement";
+
+    private static final ConcurrentMap<String, Provider> PROVIDERS = new ConcurrentHashMap<>();
+    /**
+     * 延迟选择Provider的引擎类型中，优先Provider是否支持某算法的缓存
+     */
+    private static final ConcurrentMap<String, Boolean> PREFERRED_SUPPORT = new ConcurrentHashMap<>();
+    private static volatile Provider preferredProvider;
+
+    private ProviderRegistry() {
+    }
+
+    /**
+     * 设置优先使用的Provider，同时清空已缓存的解析结果
+     *
+     * @param provider Provider，<code>null</code>表示只使用系统Provider列表
+     */
+    public static void setPreferredProvider(Provider provider) {
+        preferredProvider = provider;
+        clear();
+    }
+
+    /**
+     * 获得优先使用的Provider
+     *
+     * @return Provider，未设置时为<code>null</code>
+     */
+    public static Provider getPreferredProvider() {
+        return preferredProvider;
+    }
+
+    /**
+     * 清空已缓存的解析结果，用于安装或移除Provider之后
+     */
+    public static void clear() {
+        PROVIDERS.clear();
+        PREFERRED_SUPPORT.clear();
+    }
+
+    /**
+     * 获得支持指定引擎类型和算法的Provider，首次调用时解析并缓存
+     *
+     * @param type      引擎类型，例如 {@link #CIPHER}
+     * @param algorithm 算法，Cipher可为完整的转换名称
+     * @return Provider
+     * @throws NoSuchAlgorithmException 没有Provider支持该算法
+     */
+    public static Provider getProvider(String type, String algorithm) throws NoSuchAlgorithmException {
+        String key = type + '.' + algorithm.toUpperCase(Locale.ENGLISH);
+        Provider provider = PROVIDERS.get(key);
+        if (null == provider) {
+            provider = resolve(type, algorithm);
+            PROVIDERS.putIfAbsent(key, provider);
+        }
+        return provider;
+    }
+
+    public static MessageDigest getMessageDigest(String algorithm) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance(algorithm, getProvider(MESSAGE_DIGEST, algorithm));
+    }
+
+    public static Mac getMac(String algorithm) throws NoSuchAlgorithmException {
+        Provider provider = getPreferredProvider(MAC, algorithm);
+        return null == provider ? Mac.getInstance(algorithm) : Mac.getInstance(algorithm, provider);
+    }
+
+    public static Cipher getCipher(String transformation) throws NoSuchAlgorithmException, NoSuchPaddingException {
+        Provider provider = getPreferredProvider(CIPHER, transformation);
+        return null == provider ? Cipher.getInstance(transformation) : Cipher.getInstance(transformation, provider);
+    }
+
+    public static Signature getSignature(String algorithm) throws NoSuchAlgorithmException {
+        Provider provider = getPreferredProvider(SIGNATURE, algorithm);
+        return null == provider ? Signature.getInstance(algorithm) : Signature.getInstance(algorithm, provider);
+    }
+
+    public static KeyFactory getKeyFactory(String algorithm) throws NoSuchAlgorithmException {
+        return KeyFactory.getInstance(algorithm, getProvider(KEY_FACTORY, algorithm));
+    }
+
+    public static KeyPairGenerator getKeyPairGenerator(String algorithm) throws NoSuchAlgorithmException {
+        return KeyPairGenerator.getInstance(algorithm, getProvider(KEY_PAIR_GENERATOR, algorithm));
+    }
+
+    public static KeyGenerator getKeyGenerator(String algorithm) throws NoSuchAlgorithmException {
+        Provider provider = getPreferredProvider(KEY_GENERATOR, algorithm);
+        return null == provider ? KeyGenerator.getInstance(algorithm) : KeyGenerator.getInstance(algorithm, provider);
+    }
+
+    public static SecretKeyFactory getSecretKeyFactory(String algorithm) throws NoSuchAlgorithmException {
+        return SecretKeyFactory.getInstance(algorithm, getProvider(SECRET_KEY_FACTORY, algorithm));
+    }
+
+    public static KeyAgreement getKeyAgreement(String algorithm) throws NoSuchAlgorithmException {
+        Provider provider = getPreferredProvider(KEY_AGREEMENT, algorithm);
+        return null == provider ? KeyAgreement.getInstance(algorithm) : KeyAgreement.getInstance(algorithm, provider);
+    }
+
+    // ------------------------------------------------------------------------------------------- Private method start
+
+    /**
+     * 延迟选择Provider的引擎类型使用：优先Provider支持该算法时返回优先Provider，否则返回<code>null</code>表示交给JCA选择
+     */
+    private static Provider getPreferredProvider(String type, String algorithm) {
+        Provider preferred = preferredProvider;
+        if (null == preferred) {
+            return null;
+        }
+        String key = type + '.' + algorithm.toUpperCase(Locale.ENGLISH);
+        Boolean supported = PREFERRED_SUPPORT.get(key);
+        if (null == supported) {
+            supported = supports(preferred, type, algorithm);
+            PREFERRED_SUPPORT.putIfAbsent(key, supported);
+        }
+        return supported ? preferred : null;
+    }
+
+    /**
+     * 按优先Provider、系统Provider列表的顺序查找第一个能创建该引擎的Provider
+     */
+    private static Provider resolve(String type, String algorithm) throws NoSuchAlgorithmException {
+        Provider preferred = preferredProvider;
+        if (null != preferred && supports(preferred, type, algorithm)) {
+            return preferred;
+        }
+        for (Provider provider : Security.getProviders()) {
+            if (supports(provider, type, algorithm)) {
+                return provider;
+            }
+        }
+        throw new NoSuchAlgorithmException(type + " not available: " + algorithm);
+    }
+
+    /**
+     * 尝试从指定Provider创建引擎，Cipher转换名称由Provider自行解析模式和填充
+     */
+    private static boolean supports(Provider provider, String type, String algorithm) {
+        try {
+            switch (type) {
+                case MESSAGE_DIGEST:
+                    MessageDigest.getInstance(algorithm, provider);
+                    break;
+                case MAC:
+                    Mac.getInstance(algorithm, provider);
+                    break;
+                case CIPHER:
+                    Cipher.getInstance(algorithm, provider);
+                    break;
+                case SIGNATURE:
+                    Signature.getInstance(algorithm, provider);
+                    break;
+                case KEY_FACTORY:
+                    KeyFactory.getInstance(algorithm, provider);
+                    break;
+                case KEY_PAIR_GENERATOR:
+                    KeyPairGenerator.getInstance(algorithm, provider);
+                    break;
+                case KEY_GENERATOR:
+                    KeyGenerator.getInstance(algorithm, provider);
+                    break;
+                case SECRET_KEY_FACTORY:
+                    SecretKeyFactory.getInstance(algorithm, provider);
+                    break;
+                case KEY_AGREEMENT:
+                    KeyAgreement.getInstance(algorithm, provider);
+                    break;
+                default:
+                    return null != provider.getService(type, algorithm);
+            }
+            return true;
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+    // ------------------------------------------------------------------------------------------- Private method end
+}
@@ -0,0 +1,135 @@
+package org.templateproject.security.asymmetric;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link AsymmetricCriptor} 在多线程下签名、验证、加密、解密的正确性测试
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class ConcurrentAsymmetricTest {
+
+    private static final int THREADS = 32;
+    private static final int ROUNDS = 20;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void rsaSignAndVerifyConcurrently() throws Exception {
+        final RSA rsa = new RSA(SignAlgorithm.SHA256withRSA, null, null);
+        // PKCS#1 v1.5签名是确定的，各线程的结果须与单线程预先计算的结果相同
+        final RSA reference = new RSA(SignAlgorithm.SHA256withRSA, rsa.getPrivateKey().getEncoded(), rsa.getPublicKey().getEncoded());
+        final byte[][] expected = new byte[THREADS * ROUNDS][];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = reference.sign(message(i));
+        }
+        runAll(new Task() {
+            @Override
+            public void run(int index) {
+                byte[] data = message(index);
+                byte[] sign = rsa.sign(data);
+                assertArrayEquals(expected[index], sign);
+                assertTrue(rsa.verify(data, sign));
+                assertFalse(rsa.verify(message(index + 1), sign));
+            }
+        });
+    }
+
+    @Test
+    public void ecdsaSignAndVerifyConcurrently() throws Exception {
+        final AsymmetricCriptor ec = new AsymmetricCriptor(AsymmetricAlgorithm.EC, SignAlgorithm.SHA256withECDSA, null, null);
+        runAll(new Task() {
+            @Override
+            public void run(int index) {
+                byte[] data = message(index);
+                byte[] sign = ec.sign(data);
+                assertTrue(ec.verify(data, sign));
+                assertTrue(ec.verify(ByteBuffer.wrap(data), sign));
+                assertFalse(ec.verify(message(index + 1), sign));
+            }
+        });
+    }
+
+    @Test
+    public void rsaEncryptAndDecryptConcurrently() throws Exception {
+        final RSA rsa = new RSA();
+        runAll(new Task() {
+            @Override
+            public void run(int index) {
+                byte[] data = message(index);
+                assertArrayEquals(data, rsa.decrypt(rsa.encrypt(data, KeyType.PublicKey), KeyType.PrivateKey));
+                assertArrayEquals(data, rsa.decrypt(rsa.encrypt(data, KeyType.PrivateKey), KeyType.PublicKey));
+            }
+        });
+    }
+
+    /**
+     * 第index个任务的数据，长度不超过RSA-1024单块可加密的长度
+     */
+    private static byte[] message(int index) {
+        byte[] data = new byte[64];
+        Arrays.fill(data, (byte) index);
+        data[0] = (byte) (index >>> 8);
+        return data;
+    }
+
+    private interface Task {
+        void run(int index) throws Exception;
+    }
+
+    /**
+     * 所有线程就绪后同时开始，每个线程执行 {@link #ROUNDS} 次，任一断言失败或异常都会在此抛出
+     */
+    private void runAll(final Task task) throws Exception {
+        final CountDownLatch ready = new CountDownLatch(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    ready.countDown();
+                    start.await();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        task.run(thread * ROUNDS + round);
+                    }
+                    return null;
+                }
+            }));
+        }
+        ready.await();
+        start.countDown();
+        for (Future<Void> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+    }
+}
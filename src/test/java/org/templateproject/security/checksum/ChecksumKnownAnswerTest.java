@@ -0,0 +1,101 @@
+package org.templateproject.security.checksum;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Checksum;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 纯Java校验和实现的已知答案测试，向量来自各算法的参考实现
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class ChecksumKnownAnswerTest {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    @Test
+    public void xxHash64() {
+        assertEquals(0xEF46DB3751D8E999L, value(new XxHash64(), ascii("")));
+        assertEquals(0xD24EC4F1A98C6E5BL, value(new XxHash64(), ascii("a")));
+        assertEquals(0x44BC2CF5AD770999L, value(new XxHash64(), ascii("abc")));
+        // 超过32字节，经过四路并行累加
+        assertEquals(0xFBCEA83C8A378BF1L, value(new XxHash64(), ascii("Nobody inspects the spammish repetition")));
+        assertEquals(0xB559B98D844E0635L, value(new XxHash64(20141025L), ascii("xxhash")));
+    }
+
+    @Test
+    public void murmur3() {
+        assertEquals(0x00000000L, value(new Murmur3(), ascii("")));
+        assertEquals(0x514E28B7L, value(new Murmur3(1), ascii("")));
+        assertEquals(0x81F16F39L, value(new Murmur3(0xFFFFFFFF), ascii("")));
+        assertEquals(0x2362F9DEL, value(new Murmur3(), new byte[4]));
+        assertEquals(0xB3DD93FAL, value(new Murmur3(), ascii("abc")));
+        assertEquals(0xBA6BD213L, value(new Murmur3(), ascii("test")));
+        assertEquals(0x5A97808AL, value(new Murmur3(0x9747B28C), ascii("aaaa")));
+        assertEquals(0x24884CBAL, value(new Murmur3(0x9747B28C), ascii("Hello, world!")));
+        assertEquals(0x2E4FF723L, value(new Murmur3(), ascii("The quick brown fox jumps over the lazy dog")));
+        assertEquals(0x2FA826CDL, value(new Murmur3(0x9747B28C), ascii("The quick brown fox jumps over the lazy dog")));
+    }
+
+    @Test
+    public void pureJavaCrc32C() {
+        assertEquals(0xE3069283L, value(new PureJavaCrc32C(), ascii("123456789")));
+        // RFC 3720 附录B.4
+        byte[] data = new byte[32];
+        assertEquals(0x8A9136AAL, value(new PureJavaCrc32C(), data));
+        Arrays.fill(data, (byte) 0xFF);
+        assertEquals(0x62A8AB43L, value(new PureJavaCrc32C(), data));
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        assertEquals(0x46DD794EL, value(new PureJavaCrc32C(), data));
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (31 - i);
+        }
+        assertEquals(0x113FDB5CL, value(new PureJavaCrc32C(), data));
+    }
+
+    @Test
+    public void incrementalUpdateMatchesSingleUpdate() {
+        byte[] data = new byte[1000];
+        new Random(1).nextBytes(data);
+        Checksum[][] pairs = {
+                {new XxHash64(7), new XxHash64(7)},
+                {new Murmur3(7), new Murmur3(7)},
+                {new PureJavaCrc32C(), new PureJavaCrc32C()}
+        };
+        for (Checksum[] pair : pairs) {
+            long expected = value(pair[0], data);
+            Checksum incremental = pair[1];
+            // 以不规则长度分多次更新，覆盖内部缓冲的各种剩余长度
+            int offset = 0;
+            for (int step = 1; offset < data.length; step = step % 37 + 1) {
+                int length = Math.min(step, data.length - offset);
+                if (length == 1) {
+                    incremental.update(data[offset]);
+                } else {
+                    incremental.update(data, offset, length);
+                }
+                offset += length;
+            }
+            assertEquals(incremental.getClass().getSimpleName(), expected, incremental.getValue());
+            incremental.reset();
+            assertEquals(incremental.getClass().getSimpleName(), expected, value(incremental, data));
+        }
+    }
+
+    private static long value(Checksum checksum, byte[] data) {
+        checksum.update(data, 0, data.length);
+        return checksum.getValue();
+    }
+
+    private static byte[] ascii(String data) {
+        return data.getBytes(US_ASCII);
+    }
+}
@@ -0,0 +1,201 @@
+package org.templateproject.security.digest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 并发模式的 {@link Digester}、{@link HMac} 在多线程下的正确性测试，包括计算过程中重新初始化
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class ConcurrentDigestTest {
+
+    private static final int THREADS = 64;
+    private static final int ROUNDS = 200;
+
+    private ExecutorService executor;
+    private byte[] data;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+        data = new byte[4096];
+        new Random(42).nextBytes(data);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void digesterGivesIdenticalOutputAcrossThreads() throws Exception {
+        final Digester digester = new Digester(DigestAlgorithm.SHA256, true);
+        final byte[] expected = new Digester(DigestAlgorithm.SHA256).digest(data);
+        for (byte[] result : runAll(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return digester.digest(data);
+            }
+        })) {
+            assertArrayEquals(expected, result);
+        }
+    }
+
+    @Test
+    public void hmacGivesIdenticalOutputAcrossThreads() throws Exception {
+        byte[] key = "concurrent-hmac-key".getBytes("UTF-8");
+        final HMac hmac = new HMac(HmacAlgorithm.HmacSHA256, key, true);
+        final byte[] expected = new HMac(HmacAlgorithm.HmacSHA256, key).digest(data);
+        for (byte[] result : runAll(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return hmac.digest(data);
+            }
+        })) {
+            assertArrayEquals(expected, result);
+        }
+    }
+
+    @Test
+    public void digesterInitDuringUseDoesNotLeakOldEngines() throws Exception {
+        final Digester digester = new Digester(DigestAlgorithm.MD5, true);
+        final byte[] md5 = new Digester(DigestAlgorithm.MD5).digest(data);
+        final byte[] sha256 = new Digester(DigestAlgorithm.SHA256).digest(data);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<Boolean>> futures = startAll(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                boolean ok = true;
+                while (running.get()) {
+                    byte[] result = digester.digest(data);
+                    ok &= Arrays.equals(md5, result) || Arrays.equals(sha256, result);
+                }
+                return ok;
+            }
+        });
+        for (int i = 0; i < ROUNDS; i++) {
+            digester.init(i % 2 == 0 ? DigestAlgorithm.SHA256.getValue() : DigestAlgorithm.MD5.getValue());
+        }
+        running.set(false);
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get(1, TimeUnit.MINUTES));
+        }
+
+        // 之前借出的MD5、SHA-256对象不得混入重新初始化后的池
+        digester.init(DigestAlgorithm.SHA512.getValue());
+        byte[] sha512 = new Digester(DigestAlgorithm.SHA512).digest(data);
+        for (byte[] result : runAll(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return digester.digest(data);
+            }
+        })) {
+            assertArrayEquals(sha512, result);
+        }
+    }
+
+    @Test
+    public void hmacInitDuringUseDoesNotLeakOldEngines() throws Exception {
+        final byte[] key1 = "first-key".getBytes("UTF-8");
+        final byte[] key2 = "second-key".getBytes("UTF-8");
+        final String algorithm = HmacAlgorithm.HmacSHA256.getValue();
+        final HMac hmac = new HMac(HmacAlgorithm.HmacSHA256, key1, true);
+        final byte[] expected1 = new HMac(HmacAlgorithm.HmacSHA256, key1).digest(data);
+        final byte[] expected2 = new HMac(HmacAlgorithm.HmacSHA256, key2).digest(data);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<Boolean>> futures = startAll(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                boolean ok = true;
+                while (running.get()) {
+                    byte[] result = hmac.digest(data);
+                    ok &= Arrays.equals(expected1, result) || Arrays.equals(expected2, result);
+                }
+                return ok;
+            }
+        });
+        for (int i = 0; i < ROUNDS; i++) {
+            hmac.init(algorithm, i % 2 == 0 ? key2 : key1);
+        }
+        running.set(false);
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get(1, TimeUnit.MINUTES));
+        }
+
+        // 之前借出的旧密钥对象不得混入重新初始化后的池
+        byte[] key3 = "third-key".getBytes("UTF-8");
+        hmac.init(algorithm, key3);
+        byte[] expected3 = new HMac(HmacAlgorithm.HmacSHA256, key3).digest(data);
+        for (byte[] result : runAll(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return hmac.digest(data);
+            }
+        })) {
+            assertArrayEquals(expected3, result);
+        }
+    }
+
+    /**
+     * 在所有线程中同时开始执行，每个线程执行 {@link #ROUNDS} 次，返回全部结果
+     */
+    private List<byte[]> runAll(final Callable<byte[]> task) throws Exception {
+        List<Future<List<byte[]>>> futures = startAll(new Callable<List<byte[]>>() {
+            @Override
+            public List<byte[]> call() throws Exception {
+                List<byte[]> results = new ArrayList<>(ROUNDS);
+                for (int i = 0; i < ROUNDS; i++) {
+                    results.add(task.call());
+                }
+                return results;
+            }
+        });
+        List<byte[]> results = new ArrayList<>();
+        for (Future<List<byte[]>> future : futures) {
+            results.addAll(future.get(1, TimeUnit.MINUTES));
+        }
+        assertEquals(THREADS * ROUNDS, results.size());
+        return results;
+    }
+
+    /**
+     * 提交 {@link #THREADS} 个任务，待全部线程就绪后同时开始
+     */
+    private <T> List<Future<T>> startAll(final Callable<T> task) throws InterruptedException {
+        final CountDownLatch ready = new CountDownLatch(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    ready.countDown();
+                    start.await();
+                    return task.call();
+                }
+            }));
+        }
+        ready.await();
+        start.countDown();
+        return futures;
+    }
+}
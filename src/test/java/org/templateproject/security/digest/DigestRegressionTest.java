@@ -0,0 +1,103 @@
+package org.templateproject.security.digest;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * 流和文件摘要的回归测试，确保 {@link Digester}、{@link HMac} 对 {@link java.io.InputStream}、{@link File}
+ * 的计算结果与对同一数据的 byte[] 计算结果相同
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class DigestRegressionTest {
+
+    /**
+     * 覆盖空数据、缓冲边界和文件内存映射阈值（1MB）两侧的长度
+     */
+    private static final int[] LENGTHS = {0, 1, 8191, 8192, 65536 + 7, 1024 * 1024 - 1, 1024 * 1024 + 13, 3 * 1024 * 1024 + 5};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void digesterStreamAndFileMatchBytes() throws IOException {
+        for (int length : LENGTHS) {
+            byte[] data = randomBytes(length);
+            File file = writeFile(data);
+            for (DigestAlgorithm algorithm : DigestAlgorithm.values()) {
+                Digester digester = new Digester(algorithm);
+                byte[] expected = digester.digest(data);
+                assertNotNull(algorithm + " digest(byte[])", expected);
+                String message = algorithm + " length " + length;
+                assertArrayEquals(message + " digest(InputStream)", expected, digester.digest(new ByteArrayInputStream(data)));
+                assertArrayEquals(message + " digest(File)", expected, digester.digest(file));
+            }
+        }
+    }
+
+    @Test
+    public void hmacStreamAndFileMatchBytes() throws IOException {
+        byte[] key = randomBytes(32);
+        for (int length : LENGTHS) {
+            byte[] data = randomBytes(length);
+            File file = writeFile(data);
+            for (HmacAlgorithm algorithm : HmacAlgorithm.values()) {
+                HMac hmac = new HMac(algorithm, key);
+                byte[] expected = hmac.digest(data);
+                assertNotNull(algorithm + " digest(byte[])", expected);
+                String message = algorithm + " length " + length;
+                assertArrayEquals(message + " digest(InputStream)", expected, hmac.digest(new ByteArrayInputStream(data)));
+                assertArrayEquals(message + " digest(File)", expected, hmac.digest(file));
+            }
+        }
+    }
+
+    @Test
+    public void channelDigestRejectsNonBlockingChannel() throws IOException {
+        byte[] data = randomBytes(100000);
+        Digester digester = new Digester(DigestAlgorithm.SHA256);
+        assertArrayEquals(digester.digest(data), digester.digest(Channels.newChannel(new ByteArrayInputStream(data))));
+
+        Pipe pipe = Pipe.open();
+        try {
+            pipe.source().configureBlocking(false);
+            try {
+                digester.digest(pipe.source());
+                fail("non-blocking channel accepted");
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private File writeFile(byte[] data) throws IOException {
+        File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        return file;
+    }
+}
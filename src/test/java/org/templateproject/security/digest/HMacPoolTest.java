@@ -0,0 +1,55 @@
+package org.templateproject.security.digest;
+
+import org.junit.Test;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.security.InvalidKeyException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link HMacPool} 的测试，确保共享的 {@link HMac} 不能被某个调用方重新设置密钥
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class HMacPoolTest {
+
+    private static final byte[] DATA = "tenant data".getBytes();
+    private static final byte[] KEY_A = "key-of-tenant-a".getBytes();
+
+    @Test
+    public void pooledHmacRejectsInit() {
+        HMacPool pool = new HMacPool();
+        String expected = new HMac(HmacAlgorithm.HmacSHA256, KEY_A).digestHex(DATA);
+        HMac hmac = pool.get(HmacAlgorithm.HmacSHA256, "tenantA", KEY_A);
+        try {
+            hmac.init(HmacAlgorithm.HmacSHA256.getValue(), "evil".getBytes());
+            fail("Pooled HMac must not be re-initialized");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(expected, pool.digestHex(HmacAlgorithm.HmacSHA256, "tenantA", DATA));
+    }
+
+    @Test
+    public void pooledHmacDoesNotExposePrototype() throws InvalidKeyException {
+        HMacPool pool = new HMacPool();
+        String expected = new HMac(HmacAlgorithm.HmacSHA256, KEY_A).digestHex(DATA);
+        HMac hmac = pool.get(HmacAlgorithm.HmacSHA256, "tenantA", KEY_A);
+        hmac.getMac().init(new SecretKeySpec("evil".getBytes(), HmacAlgorithm.HmacSHA256.getValue()));
+        assertEquals(expected, pool.digestHex(HmacAlgorithm.HmacSHA256, "tenantA", DATA));
+        assertEquals(expected, pool.get(HmacAlgorithm.HmacSHA256, "tenantA").digestHex(DATA));
+    }
+
+    @Test
+    public void sameKeyIdReturnsSameInstance() {
+        HMacPool pool = new HMacPool();
+        HMac first = pool.get(HmacAlgorithm.HmacSHA256, "tenantA", KEY_A);
+        assertSame(first, pool.get(HmacAlgorithm.HmacSHA256, "tenantA"));
+        assertEquals(1, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+    }
+}
@@ -0,0 +1,85 @@
+package org.templateproject.security.digest;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 多算法摘要：并行模式与顺序模式结果一致，在所用线程池内部调用时不会死锁
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class MultiDigesterTest {
+
+    private static final byte[] KEY = "0123456789abcdef".getBytes();
+
+    @Test
+    public void parallelMatchesSequential() throws Exception {
+        byte[] data = randomBytes(3 * 1024 * 1024 + 17);
+        Map<String, byte[]> expected = newDigester().digest(data);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            MultiDigester digester = newDigester().setExecutor(executor);
+            assertDigests(expected, digester.digest(data));
+            assertDigests(expected, digester.digest(new ByteArrayInputStream(data)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void callingFromInsideExecutorDoesNotDeadlock() throws Exception {
+        final byte[] data = randomBytes(3 * 1024 * 1024 + 17);
+        Map<String, byte[]> expected = newDigester().digest(data);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final MultiDigester digester = newDigester().setExecutor(executor);
+            Map<String, byte[]> actual = executor.submit(new Callable<Map<String, byte[]>>() {
+                @Override
+                public Map<String, byte[]> call() {
+                    return digester.digest(new ByteArrayInputStream(data));
+                }
+            }).get(20, TimeUnit.SECONDS);
+            assertDigests(expected, actual);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shutdownExecutorFallsBackToCallerThread() {
+        byte[] data = randomBytes(100000);
+        Map<String, byte[]> expected = newDigester().digest(data);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        assertDigests(expected, newDigester().setExecutor(executor).digest(data));
+    }
+
+    private static MultiDigester newDigester() {
+        return new MultiDigester(DigestAlgorithm.MD5, DigestAlgorithm.SHA1, DigestAlgorithm.SHA256)
+                .addHmac(HmacAlgorithm.HmacSHA256, KEY);
+    }
+
+    private static void assertDigests(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,82 @@
+package org.templateproject.security.symmetric;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * 以 "算法/模式/填充" 转换名称构造的对称加密：需要IV的分组模式每次加密使用随机IV并能正确解密
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class IvModeTest {
+
+    private static final String[] IV_MODES = {
+            "AES/CBC/PKCS5Padding",
+            "AES/CFB/NoPadding",
+            "AES/OFB/NoPadding",
+            "AES/CTR/NoPadding",
+            "DESede/CBC/PKCS5Padding"
+    };
+
+    private static final int[] LENGTHS = {0, 1, 15, 16, 17, 1000, 65537};
+
+    @Test
+    public void ivModesUseRandomIvAndRoundTrip() {
+        Random random = new Random(42);
+        for (String algorithm : IV_MODES) {
+            SymmetricCriptor criptor = new SymmetricCriptor(algorithm);
+            int blockSize = criptor.getCipher().getBlockSize();
+            for (int length : LENGTHS) {
+                byte[] data = new byte[length];
+                random.nextBytes(data);
+                byte[] first = criptor.encrypt(data);
+                byte[] second = criptor.encrypt(data);
+                String message = algorithm + " length " + length;
+                assertEquals(message, blockSize, first[0]);
+                assertFalse(message, Arrays.equals(first, second));
+                assertArrayEquals(message, data, criptor.decrypt(first));
+                assertArrayEquals(message, data, criptor.decrypt(second));
+            }
+        }
+    }
+
+    @Test
+    public void ivModesRoundTripThroughStreamsAndBuffers() {
+        byte[] data = new byte[100000];
+        new Random(7).nextBytes(data);
+        for (String algorithm : IV_MODES) {
+            SymmetricCriptor criptor = new SymmetricCriptor(algorithm);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            criptor.encrypt(new ByteArrayInputStream(data), out);
+            byte[] encrypted = out.toByteArray();
+            ByteArrayOutputStream plain = new ByteArrayOutputStream();
+            criptor.decrypt(new ByteArrayInputStream(encrypted), plain);
+            assertArrayEquals(algorithm, data, plain.toByteArray());
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+            direct.put(data).flip();
+            assertArrayEquals(algorithm, data, criptor.decrypt(ByteBuffer.wrap(criptor.encrypt(direct))));
+        }
+    }
+
+    @Test
+    public void ecbModeStaysDeterministicWithoutHeader() {
+        SymmetricCriptor criptor = new SymmetricCriptor("AES/ECB/PKCS5Padding");
+        byte[] data = "ecb mode needs no iv".getBytes();
+        byte[] first = criptor.encrypt(data);
+        assertEquals(32, first.length);
+        assertArrayEquals(first, criptor.encrypt(data));
+        assertArrayEquals(data, criptor.decrypt(first));
+    }
+}
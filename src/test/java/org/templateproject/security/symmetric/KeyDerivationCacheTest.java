@@ -0,0 +1,40 @@
+package org.templateproject.security.symmetric;
+
+import org.junit.Test;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 口令派生密钥缓存：带盐的派生结果被缓存，不带盐的PBE密钥（即口令本身）不被缓存
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class KeyDerivationCacheTest {
+
+    private static final byte[] SALT = "0123456789abcdef".getBytes();
+
+    @Test
+    public void saltedKeysAreCached() {
+        KeyDerivationCache cache = new KeyDerivationCache();
+        SecretKey first = cache.get("PBKDF2WithHmacSHA256", "password".toCharArray(), SALT, 1000, 256);
+        SecretKey second = cache.get("PBKDF2WithHmacSHA256", "password".toCharArray(), SALT, 1000, 256);
+        assertArrayEquals(first.getEncoded(), second.getEncoded());
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void saltlessPbeKeysAreNotCached() {
+        KeyDerivationCache cache = new KeyDerivationCache();
+        SecretKey key = cache.get("PBEWithMD5AndDES", "password".toCharArray(), null, 0, 0);
+        assertArrayEquals("password".getBytes(), key.getEncoded());
+        cache.get("PBEWithMD5AndDES", "password".toCharArray(), null, 0, 0);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitCount());
+    }
+}
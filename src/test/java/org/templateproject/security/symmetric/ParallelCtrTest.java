@@ -0,0 +1,98 @@
+package org.templateproject.security.symmetric;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * CTR模式并行加解密与顺序加解密逐字节一致的测试
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class ParallelCtrTest {
+
+    private static final int BLOCK_SIZE = 16;
+    private static final int SEGMENT = SymmetricCriptor.PARALLEL_SEGMENT_SIZE;
+
+    /**
+     * 包含非分组大小整数倍、不足一段、恰好一段和跨多段的长度
+     */
+    private static final int[] LENGTHS = {0, 1, 15, 17, 1000, SEGMENT - 1, SEGMENT, SEGMENT + 1, 3 * SEGMENT + 7, 17 * SEGMENT + 9};
+
+    private SymmetricCriptor criptor;
+    private ForkJoinPool forkJoinPool;
+
+    @Before
+    public void setUp() {
+        criptor = new SymmetricCriptor(SymmetricAlgorithm.AES_CTR);
+        forkJoinPool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        forkJoinPool.shutdownNow();
+    }
+
+    @Test
+    public void parallelEncryptMatchesSequential() throws GeneralSecurityException {
+        for (int length : LENGTHS) {
+            byte[] data = randomBytes(length);
+            byte[] encrypted = criptor.encryptParallel(data, forkJoinPool);
+            byte[] iv = Arrays.copyOfRange(encrypted, 1, 1 + BLOCK_SIZE);
+            assertEquals(BLOCK_SIZE, encrypted[0]);
+            assertArrayEquals("length " + length, sequential(Cipher.ENCRYPT_MODE, iv, data),
+                    Arrays.copyOfRange(encrypted, 1 + BLOCK_SIZE, encrypted.length));
+            assertArrayEquals("length " + length, data, criptor.decrypt(encrypted));
+            assertArrayEquals("length " + length, data, criptor.decryptParallel(criptor.encrypt(data), forkJoinPool));
+        }
+    }
+
+    @Test
+    public void parallelDecryptCarriesAcrossLow64Bits() throws GeneralSecurityException {
+        byte[][] ivs = {
+                // 低64位在第一段内即溢出，进位到高64位
+                counter(0x0123456789ABCDEFL, 0xFFFFFFFFFFFFFFF0L),
+                // 低64位在第二段起始处溢出
+                counter(0x0123456789ABCDEFL, -(long) (SEGMENT / BLOCK_SIZE)),
+                // 高64位同样全为1，整个128位计数器回绕
+                counter(-1L, 0xFFFFFFFFFFFFFFFEL)
+        };
+        for (byte[] iv : ivs) {
+            for (int length : LENGTHS) {
+                byte[] data = randomBytes(length);
+                byte[] cipherText = sequential(Cipher.ENCRYPT_MODE, iv, data);
+                byte[] encrypted = ByteBuffer.allocate(1 + BLOCK_SIZE + cipherText.length)
+                        .put((byte) BLOCK_SIZE).put(iv).put(cipherText).array();
+                assertArrayEquals("length " + length, data, criptor.decryptParallel(encrypted, forkJoinPool));
+            }
+        }
+    }
+
+    private byte[] sequential(int mode, byte[] iv, byte[] data) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(SymmetricAlgorithm.AES_CTR.getValue());
+        cipher.init(mode, criptor.getSecretKey(), new IvParameterSpec(iv));
+        return cipher.doFinal(data);
+    }
+
+    private static byte[] counter(long high, long low) {
+        return ByteBuffer.allocate(BLOCK_SIZE).putLong(high).putLong(low).array();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,205 @@
+package org.templateproject.security.symmetric;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.templateproject.security.exception.CryptoException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * TPSE v2分段认证加密格式：各写入路径的往返、跨分段的随机读取，以及截断、重排和篡改的拒绝
+ *
+ * @author wuwenbin
+ * @since 1.3.0
+ */
+public class SegmentedFormatTest {
+
+    private static final int SEGMENT = 1000;
+    private static final int CIPHER_SEGMENT = SEGMENT + SegmentCodec.TAG_LENGTH;
+    private static final int HEADER = SegmentCodec.HEADER_LENGTH;
+    private static final int VERSION_OFFSET = 4;
+
+    /**
+     * 包含空数据、不足一段、恰好一段、恰好多段和带零头的多段
+     */
+    private static final int[] LENGTHS = {0, 1, SEGMENT - 1, SEGMENT, SEGMENT + 1, 5 * SEGMENT, 10 * SEGMENT + 123};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SymmetricCriptor criptor;
+    private SegmentedFileWriter writer;
+    private byte[] data;
+    private File plainFile;
+    private File cipherFile;
+
+    @Before
+    public void setUp() throws IOException {
+        criptor = new SymmetricCriptor(SymmetricAlgorithm.AES_GCM);
+        writer = new SegmentedFileWriter(criptor, SEGMENT);
+        data = random(10 * SEGMENT + 123, 1);
+        plainFile = folder.newFile("plain.bin");
+        cipherFile = folder.newFile("cipher.bin");
+        Files.write(plainFile.toPath(), data);
+        writer.write(plainFile, cipherFile);
+    }
+
+    @Test
+    public void fileWriterRoundTrip() throws IOException {
+        for (int length : LENGTHS) {
+            byte[] plain = random(length, length);
+            Files.write(plainFile.toPath(), plain);
+            long written = writer.write(plainFile, cipherFile);
+            assertEquals(cipherFile.length(), written);
+            assertArrayEquals("length " + length, plain, decryptFile(cipherFile));
+
+            File target = folder.newFile("target-" + length + ".bin");
+            SegmentedFileReader reader = new SegmentedFileReader(criptor, cipherFile);
+            try {
+                assertEquals(length, reader.length());
+                reader.decrypt(target);
+            } finally {
+                reader.close();
+            }
+            assertArrayEquals("length " + length, plain, Files.readAllBytes(target.toPath()));
+        }
+    }
+
+    @Test
+    public void streamWriterRoundTrip() throws IOException {
+        for (int length : LENGTHS) {
+            byte[] plain = random(length, length);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long written = writer.write(new ByteArrayInputStream(plain), out);
+            byte[] encrypted = out.toByteArray();
+            assertEquals(encrypted.length, written);
+
+            Files.write(cipherFile.toPath(), encrypted);
+            assertArrayEquals("length " + length, plain, decryptFile(cipherFile));
+            assertArrayEquals("length " + length, plain, criptor.decrypt(encrypted));
+        }
+    }
+
+    @Test
+    public void parallelEncryptRoundTripThroughDecrypt() {
+        int segment = SymmetricCriptor.PARALLEL_SEGMENT_SIZE;
+        int[] lengths = {0, 1, segment, 3 * segment + 5};
+        for (int length : lengths) {
+            byte[] plain = random(length, length);
+            byte[] encrypted = criptor.encryptParallel(plain);
+            assertTrue(SegmentCodec.isSegmented(encrypted));
+            assertArrayEquals("length " + length, plain, criptor.decrypt(encrypted));
+            assertArrayEquals("length " + length, plain, criptor.decryptParallel(encrypted));
+        }
+    }
+
+    @Test
+    public void rangeReadsAcrossBoundariesAndAtTail() throws IOException {
+        SegmentedFileReader reader = new SegmentedFileReader(criptor, cipherFile);
+        try {
+            long[][] ranges = {
+                    {0, 1}, {SEGMENT - 1, 2}, {SEGMENT - 10, 2 * SEGMENT + 20}, {3 * SEGMENT, SEGMENT},
+                    {data.length - 1, 1}, {data.length - 200, 200}, {data.length - 50, 500}, {0, data.length}
+            };
+            for (long[] range : ranges) {
+                int position = (int) range[0];
+                int expectedLength = (int) Math.min(range[1], data.length - position);
+                byte[] expected = Arrays.copyOfRange(data, position, position + expectedLength);
+                assertArrayEquals("range " + position + "+" + range[1], expected, reader.read(position, (int) range[1]));
+            }
+            assertEquals(0, reader.read(data.length, 10).length);
+            assertEquals(-1, reader.read(data.length, new byte[10], 0, 10));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void rejectsTruncationAtSegmentBoundary() throws IOException {
+        byte[] encrypted = Files.readAllBytes(cipherFile.toPath());
+        for (int segments = 1; segments <= 10; segments++) {
+            byte[] truncated = Arrays.copyOf(encrypted, HEADER + segments * CIPHER_SEGMENT);
+            assertRejected("truncated to " + segments + " segments", truncated);
+        }
+        assertRejected("header only", Arrays.copyOf(encrypted, HEADER));
+    }
+
+    @Test
+    public void rejectsReorderedSegments() throws IOException {
+        byte[] encrypted = Files.readAllBytes(cipherFile.toPath());
+        byte[] swapped = encrypted.clone();
+        System.arraycopy(encrypted, HEADER, swapped, HEADER + CIPHER_SEGMENT, CIPHER_SEGMENT);
+        System.arraycopy(encrypted, HEADER + CIPHER_SEGMENT, swapped, HEADER, CIPHER_SEGMENT);
+        assertRejected("swapped segments 0 and 1", swapped);
+    }
+
+    @Test
+    public void rejectsHeaderBitFlips() throws IOException {
+        byte[] encrypted = Files.readAllBytes(cipherFile.toPath());
+        for (int i = 0; i < HEADER; i++) {
+            byte[] flipped = encrypted.clone();
+            flipped[i] ^= 1;
+            assertRejected("flipped header byte " + i, flipped);
+        }
+    }
+
+    @Test
+    public void rejectsUnknownVersion() throws IOException {
+        byte[] encrypted = Files.readAllBytes(cipherFile.toPath());
+        for (byte version : new byte[]{1, 3}) {
+            byte[] changed = encrypted.clone();
+            changed[VERSION_OFFSET] = version;
+            assertRejected("version " + version, changed);
+        }
+    }
+
+    /**
+     * 密文在内存解密和文件读取两条路径上都应被拒绝
+     */
+    private void assertRejected(String message, byte[] encrypted) throws IOException {
+        try {
+            criptor.decrypt(encrypted);
+            fail(message + ": decrypt accepted tampered data");
+        } catch (CryptoException expected) {
+            // expected
+        }
+        File tampered = folder.newFile();
+        Files.write(tampered.toPath(), encrypted);
+        try {
+            decryptFile(tampered);
+            fail(message + ": reader accepted tampered data");
+        } catch (CryptoException expected) {
+            // expected
+        }
+    }
+
+    private byte[] decryptFile(File file) throws IOException {
+        SegmentedFileReader reader = new SegmentedFileReader(criptor, file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(reader.length(), reader.transferTo(out));
+            return out.toByteArray();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static byte[] random(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}